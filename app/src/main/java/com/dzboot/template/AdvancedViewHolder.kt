@@ -1,17 +1,38 @@
 package com.dzboot.template
 
 import android.content.Context
+import android.graphics.Bitmap
 import android.graphics.drawable.Drawable
+import android.view.View
 import androidx.annotation.ColorInt
 import androidx.annotation.ColorRes
 import androidx.annotation.DrawableRes
 import androidx.annotation.StringRes
 import androidx.core.content.ContextCompat
+import androidx.core.view.ViewCompat
 import androidx.recyclerview.widget.RecyclerView
 import androidx.viewbinding.ViewBinding
+import com.dzboot.template.ImageDecodeScheduler.Priority
+import java.io.File
 
 class AdvancedViewHolder<T : ViewBinding?>(var binding: T) : RecyclerView.ViewHolder(binding!!.root) {
 
+	private var imageRequest: ImageDecodeScheduler.Request? = null
+	private var imageToken: Any? = null
+
+	init {
+		//rows bound ahead of scrolling wait behind the visible ones until they are attached
+		itemView.addOnAttachStateChangeListener(object : View.OnAttachStateChangeListener {
+			override fun onViewAttachedToWindow(view: View) {
+				imageRequest?.setPriority(Priority.VISIBLE)
+			}
+
+			override fun onViewDetachedFromWindow(view: View) {
+				imageRequest?.setPriority(Priority.PREFETCH)
+			}
+		})
+	}
+
 	val context: Context
 		get() = itemView.context
 
@@ -29,4 +50,40 @@ class AdvancedViewHolder<T : ViewBinding?>(var binding: T) : RecyclerView.ViewHo
 
 	@ColorInt
 	fun getColor(@ColorRes resId: Int): Int = ContextCompat.getColor(context, resId)
+
+	/**
+	 * Decodes the image in the background, cancelling the previous image of this holder.
+	 * onLoaded is called on the main thread, unless the holder loads another image or is recycled before
+	 *
+	 * @param file      the image file
+	 * @param maxWidth  width in px the image should fit in
+	 * @param maxHeight height in px the image should fit in
+	 * @param config    pixel config, RGB_565 halves the memory of opaque thumbnails
+	 * @param onLoaded  receives the Bitmap, null if the file could not be decoded
+	 */
+	fun loadImage(file: File, maxWidth: Int, maxHeight: Int, config: Bitmap.Config? = null,
+	              onLoaded: (Bitmap?) -> Unit) {
+		cancelImage()
+		val token = Any()
+		imageToken = token
+		val priority = if (ViewCompat.isAttachedToWindow(itemView)) Priority.VISIBLE else Priority.PREFETCH
+		val request = ImageDecodeScheduler.request(file, maxWidth, maxHeight, config, priority) { bitmap ->
+			if (imageToken === token) {
+				cancelImage()
+				onLoaded(bitmap)
+			}
+		}
+		//a cached Bitmap is delivered before request() returns
+		if (imageToken === token)
+			imageRequest = request
+	}
+
+	/**
+	 * Cancels the pending image, called for recycled holders of lists passed to [ImageDecodeScheduler.attachTo]
+	 */
+	fun cancelImage() {
+		imageRequest?.cancel()
+		imageRequest = null
+		imageToken = null
+	}
 }
\ No newline at end of file
@@ -0,0 +1,264 @@
+package com.dzboot.template
+
+import android.content.ComponentCallbacks2
+import android.graphics.Bitmap
+import android.os.Build
+import android.os.Handler
+import android.os.Looper
+import android.util.LruCache
+import android.view.Choreographer
+import androidx.annotation.MainThread
+import androidx.recyclerview.widget.RecyclerView
+import com.dzboot.template.helpers.BitmapDecoder
+import com.dzboot.template.helpers.ImageUtils
+import timber.log.Timber
+import java.io.File
+import java.util.concurrent.PriorityBlockingQueue
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+
+/**
+ * Decodes images off the main thread for list rows, see [AdvancedViewHolder.loadImage].
+ *
+ * Requests for visible rows run before prefetched ones, newest first so a fling shows where it stops first.
+ * Requests for the same file and size share one decode, a decode is dropped when all its requests are cancelled
+ * before it starts, and results are handed to the main thread in one batch per frame. Decoded Bitmaps are kept in
+ * a small memory cache so prefetched rows show instantly; they are marked with [ImageUtils.markShared] so
+ * [ImageUtils.releaseBitmap] never gives them to the BitmapPool.
+ */
+object ImageDecodeScheduler {
+
+	enum class Priority { VISIBLE, PREFETCH }
+
+	//the modification time and length tell a file rewritten in place from the decoded one
+	internal data class Key(val path: String, val lastModified: Long, val length: Long, val maxWidth: Int,
+	                        val maxHeight: Int, val config: Bitmap.Config?) {
+
+		constructor(file: File, maxWidth: Int, maxHeight: Int, config: Bitmap.Config?) :
+				this(file.path, file.lastModified(), file.length(), maxWidth, maxHeight, config)
+	}
+
+	class Request internal constructor(internal val key: Key, priority: Priority,
+	                                   internal val callback: ((Bitmap?) -> Unit)?) {
+
+		@Volatile
+		var isCancelled = false
+			private set
+
+		//guarded by lock
+		internal var priority = priority
+
+		/**
+		 * The callback won't be called, the decode is dropped if no other request waits for it
+		 */
+		fun cancel() {
+			if (isCancelled)
+				return
+			isCancelled = true
+			ImageDecodeScheduler.onCancelled(this)
+		}
+
+		/**
+		 * Moves the request up or down the queue, for example when its row enters or leaves the screen
+		 */
+		fun setPriority(priority: Priority) = ImageDecodeScheduler.onPriorityChanged(this, priority)
+	}
+
+	private class Job(val key: Key, var priority: Priority, var sequence: Long) : Runnable, Comparable<Job> {
+
+		//guarded by lock
+		val requests = ArrayList<Request>(1)
+		var started = false
+
+		override fun compareTo(other: Job): Int =
+				if (priority != other.priority) priority.compareTo(other.priority)
+				else other.sequence.compareTo(sequence)
+
+		override fun run() = decode(this)
+	}
+
+
+	private val threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() - 1))
+	private val threadCount = AtomicInteger()
+	private val executor = ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS, PriorityBlockingQueue<Runnable>(),
+	                                          ThreadFactory { runnable ->
+		                                          Thread(runnable, "ImageDecode-" + threadCount.incrementAndGet())
+				                                          .apply { priority = Thread.NORM_PRIORITY - 1 }
+	                                          }).apply {
+		allowCoreThreadTimeOut(true)
+		prestartAllCoreThreads()
+	}
+
+	private val lock = Any()
+	private val sequence = AtomicLong()
+	private val inFlight = HashMap<Key, Job>()
+	private val cache = object : LruCache<Key, Bitmap>((Runtime.getRuntime().maxMemory() / 16).toInt()) {
+		override fun sizeOf(key: Key, value: Bitmap) =
+				if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) value.allocationByteCount else value.byteCount
+	}
+
+	//main thread only
+	private val mainHandler = Handler(Looper.getMainLooper())
+	private val deliveries = ArrayList<Pair<Request, Bitmap?>>()
+	private var frameScheduled = false
+	private val frameCallback = Choreographer.FrameCallback {
+		frameScheduled = false
+		val batch = ArrayList(deliveries)
+		deliveries.clear()
+		for ((request, bitmap) in batch) {
+			if (!request.isCancelled)
+				request.callback?.invoke(bitmap)
+		}
+	}
+
+
+	/**
+	 * Decodes the file down to the size, a cached result is delivered immediately
+	 *
+	 * @param callback called on the main thread with the Bitmap, null if the file could not be decoded
+	 * @return the request, to cancel it
+	 */
+	@MainThread
+	fun request(file: File, maxWidth: Int, maxHeight: Int, config: Bitmap.Config? = null,
+	            priority: Priority = Priority.VISIBLE, callback: (Bitmap?) -> Unit): Request =
+			enqueue(Key(file, maxWidth, maxHeight, config), priority, callback)
+
+	/**
+	 * Decodes the file into the memory cache after the visible requests, for rows about to be shown
+	 */
+	fun prefetch(file: File, maxWidth: Int, maxHeight: Int, config: Bitmap.Config? = null): Request =
+			enqueue(Key(file, maxWidth, maxHeight, config), Priority.PREFETCH, null)
+
+	/**
+	 * Cancels the requests of the recycled [AdvancedViewHolder]s of the list automatically
+	 */
+	@MainThread
+	fun attachTo(recyclerView: RecyclerView) {
+		recyclerView.addRecyclerListener { holder -> (holder as? AdvancedViewHolder<*>)?.cancelImage() }
+	}
+
+	/**
+	 * Releases memory according to [ComponentCallbacks2.onTrimMemory]
+	 */
+	fun trimMemory(level: Int) {
+		if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND)
+			cache.evictAll()
+		else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN ||
+		         level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL)
+			cache.trimToSize(cache.maxSize() / 2)
+	}
+
+	private fun enqueue(key: Key, priority: Priority, callback: ((Bitmap?) -> Unit)?): Request {
+		val request = Request(key, priority, callback)
+		val cached = cache.get(key)
+		if (cached != null) {
+			if (callback != null && Looper.myLooper() == Looper.getMainLooper())
+				callback(cached)
+			else if (callback != null)
+				deliver(listOf(request), cached)
+			return request
+		}
+
+		synchronized(lock) {
+			val job = inFlight[key]
+			if (job == null) {
+				Job(key, priority, sequence.incrementAndGet()).also {
+					it.requests.add(request)
+					inFlight[key] = it
+					submit(it)
+				}
+			} else {
+				job.requests.add(request)
+				if (priority < job.priority)
+					requeue(job, priority)
+			}
+		}
+		return request
+	}
+
+	private fun onCancelled(request: Request) {
+		synchronized(lock) {
+			val job = inFlight[request.key] ?: return
+			if (job.started || job.requests.any { !it.isCancelled })
+				return
+			executor.remove(job)
+			inFlight.remove(request.key)
+		}
+	}
+
+	private fun onPriorityChanged(request: Request, priority: Priority) {
+		synchronized(lock) {
+			request.priority = priority
+			val job = inFlight[request.key] ?: return
+			val wanted = job.requests.filter { !it.isCancelled }.minOfOrNull { it.priority } ?: return
+			if (wanted != job.priority)
+				requeue(job, wanted)
+		}
+	}
+
+	/**
+	 * Changes the priority of a queued job, it must leave the queue first since the ordering changes
+	 */
+	private fun requeue(job: Job, priority: Priority) {
+		if (job.started || !executor.remove(job)) {
+			job.priority = priority
+			return
+		}
+		job.priority = priority
+		job.sequence = sequence.incrementAndGet()
+		submit(job)
+	}
+
+	/**
+	 * Queues the job, restarting the workers which idled out first: a missing worker would be handed the job
+	 * directly, skipping the priority order
+	 */
+	private fun submit(job: Job) {
+		executor.prestartAllCoreThreads()
+		executor.execute(job)
+	}
+
+	private fun decode(job: Job) {
+		synchronized(lock) {
+			if (inFlight[job.key] !== job)
+				return
+			job.started = true
+		}
+
+		val bitmap = try {
+			BitmapDecoder.decode(File(job.key.path), job.key.maxWidth, job.key.maxHeight, job.key.config, null)
+		} catch (e: Exception) {
+			Timber.w(e, "Could not decode %s", job.key.path)
+			null
+		}
+		if (bitmap != null) {
+			ImageUtils.markShared(bitmap)
+			cache.put(job.key, bitmap)
+		}
+
+		val targets = synchronized(lock) {
+			inFlight.remove(job.key)
+			job.requests.filter { !it.isCancelled && it.callback != null }
+		}
+		if (targets.isNotEmpty())
+			deliver(targets, bitmap)
+	}
+
+	/**
+	 * Queues the results for the next frame, so many rows finishing together cause a single pass
+	 */
+	private fun deliver(requests: List<Request>, bitmap: Bitmap?) {
+		mainHandler.post {
+			for (request in requests)
+				deliveries.add(request to bitmap)
+			if (!frameScheduled) {
+				frameScheduled = true
+				Choreographer.getInstance().postFrameCallback(frameCallback)
+			}
+		}
+	}
+}
@@ -12,6 +12,7 @@ import androidx.annotation.LayoutRes
 import androidx.appcompat.app.AppCompatActivity
 import androidx.appcompat.app.AppCompatDelegate
 import androidx.core.content.res.ResourcesCompat
+import com.dzboot.country_utils.CountryUtils
 import com.zeugmasolutions.localehelper.LocaleHelper
 import com.zeugmasolutions.localehelper.LocaleHelperActivityDelegateImpl
 import io.github.inflationx.viewpump.ViewPumpContextWrapper
@@ -92,6 +93,7 @@ abstract class BaseActivity : AppCompatActivity() {
    override fun getApplicationContext() = localeDelegate.getApplicationContext(super.getApplicationContext())
 
    open fun updateLocale(locale: Locale) {
+      CountryUtils.preloadLocalizedNames(locale)
       localeDelegate.setLocale(this, locale)
    }
 
@@ -1,13 +1,21 @@
 package com.dzboot.template.base
 
 import android.app.Application
+import android.content.ComponentCallbacks2
 import android.content.Context
 import android.content.res.Configuration
 import android.os.StrictMode
 import android.os.StrictMode.VmPolicy
 import androidx.multidex.MultiDex
+import com.dzboot.country_utils.CountryUtils
 import com.dzboot.template.BuildConfig
+import com.dzboot.template.ImageDecodeScheduler
 import com.dzboot.template.R
+import com.dzboot.template.helpers.BitmapPool
+import com.dzboot.template.helpers.FileUtils
+import com.dzboot.template.helpers.ResizedDrawableCache
+import com.dzboot.template.helpers.RingLogTree
+import com.dzboot.template.helpers.SystemUtils.reportPreviousSessionCrash
 import com.google.android.play.core.missingsplits.MissingSplitsManagerFactory
 import com.zeugmasolutions.localehelper.LocaleHelper
 import com.zeugmasolutions.localehelper.LocaleHelperApplicationDelegate
@@ -16,6 +24,8 @@ import io.github.inflationx.calligraphy3.CalligraphyInterceptor
 import io.github.inflationx.viewpump.ViewPump
 import timber.log.Timber
 import timber.log.Timber.DebugTree
+import java.io.File
+import kotlin.concurrent.thread
 
 
 class BaseApp : Application() {
@@ -36,6 +46,23 @@ class BaseApp : Application() {
    override fun getApplicationContext(): Context = LocaleHelper.onAttach(super.getApplicationContext())
    //endregion
 
+   override fun onTrimMemory(level: Int) {
+      super.onTrimMemory(level)
+      BitmapPool.get().trimMemory(level)
+      ResizedDrawableCache.trimMemory(level)
+      ImageDecodeScheduler.trimMemory(level)
+      if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN)
+         CountryUtils.trimLocalizedNames()
+   }
+
+   override fun onLowMemory() {
+      super.onLowMemory()
+      BitmapPool.get().clear()
+      ResizedDrawableCache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE)
+      ImageDecodeScheduler.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE)
+      CountryUtils.trimLocalizedNames()
+   }
+
 
    override fun onCreate() {
 
@@ -45,6 +72,20 @@ class BaseApp : Application() {
       }
 
       super.onCreate()
+      FileUtils.initLogger(this)
+      CountryUtils.preloadIndex()
+
+      //keeps the last logs on disk even if the process dies, reported on the next launch after a crash
+      if (BuildConfig.RING_LOG) {
+         RingLogTree(File(filesDir, "ring.log"), minPriority = BuildConfig.RING_LOG_MIN_PRIORITY).let {
+            Timber.plant(it)
+            thread(name = "RingLogTree") {
+               it.open()
+               it.reportPreviousSessionCrash()
+            }
+         }
+      }
+
       if (BuildConfig.DEBUG) {
          Timber.plant(DebugTree())
          enableStrictModes()
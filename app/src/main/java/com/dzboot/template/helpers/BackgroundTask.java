@@ -0,0 +1,117 @@
+package com.dzboot.template.helpers;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Base of the cancellable file operations running on a small pool, like {@link CacheCleaner}, {@link UriImporter}
+ * and {@link DirectoryScanner}. It holds the cancel flag and the final result, throttles progress reports and
+ * delivers progress and result on the main thread, a progress report never arrives after the result.
+ *
+ * @param <R> the result type
+ */
+@SuppressWarnings("unused")
+public abstract class BackgroundTask<R> {
+
+   static final int THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+   private static final long PROGRESS_INTERVAL_MS = 100;
+   private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+   private final AtomicLong lastProgress = new AtomicLong();
+   private volatile boolean cancelled;
+   private volatile R result;
+
+
+   /**
+    * Stops the task as soon as possible, see the subclass for what is kept
+    */
+   public void cancel() {
+      cancelled = true;
+   }
+
+   public boolean isCancelled() {
+      return cancelled;
+   }
+
+   public boolean isDone() {
+      return result != null;
+   }
+
+   /**
+    * @return the final result, null while the task is running
+    */
+   @Nullable
+   public R getResult() {
+      return result;
+   }
+
+   /**
+    * @return true at most every 100ms, when a progress report is due, read the counters only then
+    */
+   protected boolean isProgressDue() {
+      long now = SystemClock.uptimeMillis();
+      long last = lastProgress.get();
+      return now - last >= PROGRESS_INTERVAL_MS && lastProgress.compareAndSet(last, now);
+   }
+
+   /**
+    * Runs the report on the main thread, unless the task finished in the meantime
+    */
+   protected void postProgress(@NonNull Runnable report) {
+      mainHandler.post(() -> {
+         if (result == null)
+            report.run();
+      });
+   }
+
+   /**
+    * Sets the result, on the main thread right before running onFinished if there is one
+    *
+    * @param finalResult the result
+    * @param onFinished  notifies the listener, null if there is none
+    */
+   protected void finish(@NonNull R finalResult, @Nullable Runnable onFinished) {
+      if (onFinished == null) {
+         result = finalResult;
+         return;
+      }
+      mainHandler.post(() -> {
+         result = finalResult;
+         onFinished.run();
+      });
+   }
+
+   /**
+    * @param name prefix of the thread names
+    * @return a pool of {@link #THREADS} low priority threads, stopped when idle
+    */
+   @NonNull
+   static ThreadPoolExecutor newExecutor(@NonNull String name) {
+      ThreadFactory factory = new ThreadFactory() {
+         private final AtomicInteger count = new AtomicInteger();
+
+         @Override
+         public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+         }
+      };
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, 10, TimeUnit.SECONDS,
+                                                       new LinkedBlockingQueue<>(), factory);
+      pool.allowCoreThreadTimeOut(true);
+      return pool;
+   }
+}
@@ -0,0 +1,226 @@
+package com.dzboot.template.helpers;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * Decodes images down to a target size reading the source once: bounds and pixels come from the same stream,
+ * rewound with mark/reset, or by seeking the file when the header was larger than the mark. The sample size is
+ * the smallest power of two fitting the target, pixels can go into a reused Bitmap and the config can be chosen.
+ */
+@SuppressWarnings("unused")
+public class BitmapDecoder {
+
+   private static final int BUFFER_SIZE = 16 * 1024;
+   //large enough for headers with big EXIF thumbnails
+   private static final int MARK_LIMIT = 1024 * 1024;
+
+
+   /**
+    * Decodes a file
+    *
+    * @param file      the image file
+    * @param maxWidth  width in px the result should fit in
+    * @param maxHeight height in px the result should fit in
+    * @param config    the pixel config, null for the decoder's default
+    * @param reuse     a mutable Bitmap whose memory may be reused for the pixels, null to borrow one from {@link BitmapPool}
+    * @return the decoded Bitmap, null if the file is not an image
+    * @throws IOException if the file can't be read
+    */
+   @Nullable
+   @WorkerThread
+   public static Bitmap decode(@NonNull File file, int maxWidth, int maxHeight, @Nullable Bitmap.Config config,
+                               @Nullable Bitmap reuse) throws IOException {
+      try (FileInputStream input = new FileInputStream(file)) {
+         BufferedInputStream buffered = new BufferedInputStream(input, BUFFER_SIZE);
+         buffered.mark(MARK_LIMIT);
+         BitmapFactory.Options options = readBounds(buffered);
+         if (options == null)
+            return null;
+
+         InputStream pixels = buffered;
+         try {
+            buffered.reset();
+         } catch (IOException e) {
+            //the header was longer than the mark, seeking costs less than opening again
+            input.getChannel().position(0);
+            pixels = new BufferedInputStream(input, BUFFER_SIZE);
+         }
+         return decodePixels(pixels, options, maxWidth, maxHeight, config, reuse, () -> {
+            input.getChannel().position(0);
+            return new BufferedInputStream(input, BUFFER_SIZE);
+         });
+      }
+   }
+
+   /**
+    * Decodes a stream, wrapped in a buffered stream if it doesn't support mark
+    *
+    * @param input     the image stream, not closed
+    * @param maxWidth  width in px the result should fit in
+    * @param maxHeight height in px the result should fit in
+    * @param config    the pixel config, null for the decoder's default
+    * @param reuse     a mutable Bitmap whose memory may be reused for the pixels, null to borrow one from {@link BitmapPool}
+    * @return the decoded Bitmap, null if the stream is not an image
+    * @throws IOException if the stream can't be read or its header is longer than 1MB
+    */
+   @Nullable
+   @WorkerThread
+   public static Bitmap decode(@NonNull InputStream input, int maxWidth, int maxHeight, @Nullable Bitmap.Config config,
+                               @Nullable Bitmap reuse) throws IOException {
+      InputStream stream = input.markSupported() ? input : new BufferedInputStream(input, BUFFER_SIZE);
+      stream.mark(MARK_LIMIT);
+      BitmapFactory.Options options = readBounds(stream);
+      if (options == null)
+         return null;
+
+      stream.reset();
+      //a failed reuse has consumed the stream, the retry can only happen while the mark is valid
+      stream.mark(MARK_LIMIT);
+      return decodePixels(stream, options, maxWidth, maxHeight, config, reuse, () -> {
+         stream.reset();
+         return stream;
+      });
+   }
+
+   /**
+    * @return the smallest power of two which makes the image fit in the target, 1 if it already fits
+    */
+   public static int calculateSampleSize(int width, int height, int maxWidth, int maxHeight) {
+      if (maxWidth <= 0 || maxHeight <= 0 || (width <= maxWidth && height <= maxHeight))
+         return 1;
+
+      int maxSize = Math.max(maxWidth, maxHeight);
+      int ratio = (Math.max(width, height) + maxSize - 1) / maxSize;
+      int sample = Integer.highestOneBit(ratio);
+      return sample < ratio ? sample << 1 : sample;
+   }
+
+   /**
+    * @param candidate a Bitmap that could receive the pixels
+    * @return whether BitmapFactory can decode an image of that size and config into the candidate
+    */
+   public static boolean canReuse(@NonNull Bitmap candidate, int width, int height, int sampleSize,
+                                  @Nullable Bitmap.Config config) {
+      if (!candidate.isMutable() || candidate.isRecycled())
+         return false;
+
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+         //decoders may round up, estimate with the rounded up size
+         int sampledWidth = (width + sampleSize - 1) / sampleSize;
+         int sampledHeight = (height + sampleSize - 1) / sampleSize;
+         long needed = (long) sampledWidth * sampledHeight * bytesPerPixel(config);
+         return needed <= candidate.getAllocationByteCount();
+      }
+      //before KitKat only same sized, unsampled images can be reused
+      return candidate.getWidth() == width && candidate.getHeight() == height && sampleSize == 1 &&
+             (config == null || candidate.getConfig() == config);
+   }
+
+   static int bytesPerPixel(@Nullable Bitmap.Config config) {
+      if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444)
+         return 2;
+      if (config == Bitmap.Config.ALPHA_8)
+         return 1;
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && config == Bitmap.Config.RGBA_F16)
+         return 8;
+      return 4;
+   }
+
+   static boolean isHardware(@Nullable Bitmap.Config config) {
+      return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && config == Bitmap.Config.HARDWARE;
+   }
+
+   @Nullable
+   private static BitmapFactory.Options readBounds(@NonNull InputStream stream) {
+      BitmapFactory.Options options = new BitmapFactory.Options();
+      options.inJustDecodeBounds = true;
+      BitmapFactory.decodeStream(new NoMark(stream), null, options);
+      return options.outWidth > 0 && options.outHeight > 0 ? options : null;
+   }
+
+   /**
+    * Hides mark support from BitmapFactory: before KitKat it calls mark(1024) on the stream, which replaced our
+    * mark and made reset fail for headers over 1KB. Without it, BitmapFactory marks a buffer of its own
+    */
+   private static class NoMark extends FilterInputStream {
+
+      NoMark(@NonNull InputStream in) {
+         super(in);
+      }
+
+      @Override
+      public boolean markSupported() {
+         return false;
+      }
+
+      @Override
+      public void mark(int readLimit) {
+      }
+
+      @Override
+      public void reset() throws IOException {
+         throw new IOException("mark/reset not supported");
+      }
+
+      @Override
+      public void close() {
+         //the stream belongs to the caller
+      }
+   }
+
+   private interface Rewind {
+
+      @NonNull
+      InputStream rewind() throws IOException;
+   }
+
+   @Nullable
+   private static Bitmap decodePixels(@NonNull InputStream stream, @NonNull BitmapFactory.Options options,
+                                      int maxWidth, int maxHeight, @Nullable Bitmap.Config config,
+                                      @Nullable Bitmap reuse, @NonNull Rewind rewind) throws IOException {
+      int width = options.outWidth, height = options.outHeight;
+      options.inJustDecodeBounds = false;
+      options.inSampleSize = calculateSampleSize(width, height, maxWidth, maxHeight);
+      if (config != null)
+         options.inPreferredConfig = config;
+
+      //hardware bitmaps can neither be reused nor reuse memory
+      Bitmap borrowed = null;
+      if (!isHardware(config)) {
+         options.inMutable = true;
+         if (reuse != null && canReuse(reuse, width, height, options.inSampleSize, config))
+            options.inBitmap = reuse;
+         else if (reuse == null)
+            options.inBitmap = borrowed = BitmapPool.get().getForDecode(width, height, options.inSampleSize, config);
+      }
+
+      Bitmap bitmap;
+      try {
+         bitmap = BitmapFactory.decodeStream(new NoMark(stream), null, options);
+      } catch (IllegalArgumentException e) {
+         if (options.inBitmap == null)
+            throw e;
+         //the estimate was wrong for this format, decode into a new Bitmap
+         options.inBitmap = null;
+         bitmap = BitmapFactory.decodeStream(new NoMark(rewind.rewind()), null, options);
+      }
+
+      if (borrowed != null && bitmap != borrowed)
+         BitmapPool.get().put(borrowed);
+      return bitmap;
+   }
+}
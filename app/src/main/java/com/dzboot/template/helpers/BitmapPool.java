@@ -0,0 +1,314 @@
+package com.dzboot.template.helpers;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * Keeps Bitmaps that are no longer displayed so their memory can be reused by the next decode or scale instead of
+ * being allocated again. From KitKat a Bitmap can be reconfigured to any size fitting its allocation, so they are
+ * bucketed by byte size and the smallest one large enough is lent. Before, only a Bitmap of the exact same size and
+ * config can be reused. The least recently returned Bitmaps are recycled above the memory budget.
+ */
+@SuppressWarnings("unused")
+public class BitmapPool {
+
+   //a larger Bitmap than this many times the request wastes more than it saves
+   private static final int MAX_SIZE_MULTIPLE = 8;
+
+   private static volatile BitmapPool instance;
+
+   private long maxBytes;
+   private long currentBytes;
+   private int hits;
+   private int misses;
+   private int puts;
+   private int evictions;
+
+   //every pooled Bitmap in the order they were returned, eldest first
+   private final LinkedHashMap<Bitmap, Key> lru = new LinkedHashMap<>();
+   private final Map<Key, ArrayDeque<Bitmap>> groups = new HashMap<>();
+   //allocation size -> number of pooled Bitmaps of that size, per config, used from KitKat
+   private final Map<Bitmap.Config, TreeMap<Integer, Integer>> sizes = new HashMap<>();
+
+
+   /**
+    * (byte size, config) from KitKat, (width, height, config) before
+    */
+   private static final class Key {
+
+      final int width;
+      final int height;
+      final Bitmap.Config config;
+
+      Key(int width, int height, @Nullable Bitmap.Config config) {
+         this.width = width;
+         this.height = height;
+         this.config = config;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         if (!(o instanceof Key))
+            return false;
+         Key other = (Key) o;
+         return width == other.width && height == other.height && config == other.config;
+      }
+
+      @Override
+      public int hashCode() {
+         return (31 * width + height) * 31 + (config == null ? 0 : config.hashCode());
+      }
+   }
+
+
+   /**
+    * @param maxBytes memory budget of the pooled Bitmaps
+    */
+   public BitmapPool(long maxBytes) {
+      this.maxBytes = maxBytes;
+   }
+
+   /**
+    * @return the pool shared by {@link ImageUtils}, sized to an eighth of the heap
+    */
+   @NonNull
+   public static BitmapPool get() {
+      BitmapPool pool = instance;
+      if (pool == null) {
+         synchronized (BitmapPool.class) {
+            pool = instance;
+            if (pool == null)
+               instance = pool = new BitmapPool(Runtime.getRuntime().maxMemory() / 8);
+         }
+      }
+      return pool;
+   }
+
+   private static boolean bySize() {
+      return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+   }
+
+   private static int allocationSize(@NonNull Bitmap bitmap) {
+      return bySize() ? bitmap.getAllocationByteCount() : bitmap.getByteCount();
+   }
+
+   @NonNull
+   private static Key keyOf(@NonNull Bitmap bitmap) {
+      return bySize() ? new Key(bitmap.getAllocationByteCount(), 0, bitmap.getConfig())
+                      : new Key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+   }
+
+   /**
+    * Returns a Bitmap to the pool, it must not be used by the caller anymore once pooled. Bitmaps which can't be
+    * pooled, such as immutable ones which may come from Resources, are left untouched for the GC
+    *
+    * @param bitmap a Bitmap nothing draws anymore
+    * @return false if it can't be pooled
+    */
+   public synchronized boolean put(@NonNull Bitmap bitmap) {
+      if (bitmap.isRecycled())
+         return false;
+
+      if (lru.containsKey(bitmap))
+         return true;
+
+      int size = allocationSize(bitmap);
+      //only recycle what the pool owns, others may still be drawn
+      if (!bitmap.isMutable() || size > maxBytes || BitmapDecoder.isHardware(bitmap.getConfig()))
+         return false;
+
+      Key key = keyOf(bitmap);
+      ArrayDeque<Bitmap> group = groups.get(key);
+      if (group == null)
+         groups.put(key, group = new ArrayDeque<>());
+      group.addLast(bitmap);
+      lru.put(bitmap, key);
+      if (bySize())
+         changeSizeCount(bitmap.getConfig(), key.width, 1);
+      currentBytes += size;
+      puts++;
+      trimTo(maxBytes);
+      return true;
+   }
+
+   /**
+    * Lends a Bitmap of the size and config with undefined content, for callers which draw over all of it
+    *
+    * @return a pooled Bitmap, null on a miss
+    */
+   @Nullable
+   public synchronized Bitmap getDirty(int width, int height, @NonNull Bitmap.Config config) {
+      Bitmap bitmap = take(width, height, config, (long) width * height * BitmapDecoder.bytesPerPixel(config));
+      if (bitmap != null && bySize() &&
+          (bitmap.getWidth() != width || bitmap.getHeight() != height || bitmap.getConfig() != config))
+         bitmap.reconfigure(width, height, config);
+      return bitmap;
+   }
+
+   /**
+    * Lends a transparent Bitmap of the size and config, allocating it on a miss
+    */
+   @NonNull
+   public Bitmap get(int width, int height, @NonNull Bitmap.Config config) {
+      Bitmap bitmap = getDirty(width, height, config);
+      if (bitmap == null)
+         return Bitmap.createBitmap(width, height, config);
+      bitmap.eraseColor(0);
+      return bitmap;
+   }
+
+   /**
+    * Lends a Bitmap BitmapFactory can decode an image into, see {@link BitmapDecoder#canReuse}
+    *
+    * @param width      the image width
+    * @param height     the image height
+    * @param sampleSize the sample size it will be decoded with
+    * @param config     the config it will be decoded to, null for ARGB_8888
+    * @return a pooled Bitmap, null on a miss
+    */
+   @Nullable
+   public synchronized Bitmap getForDecode(int width, int height, int sampleSize, @Nullable Bitmap.Config config) {
+      if (config == null)
+         config = Bitmap.Config.ARGB_8888;
+      if (!bySize()) {
+         //before KitKat only same sized, unsampled images can be reused
+         return sampleSize == 1 ? take(width, height, config, 0) : null;
+      }
+
+      int sampledWidth = (width + sampleSize - 1) / sampleSize;
+      int sampledHeight = (height + sampleSize - 1) / sampleSize;
+      return take(sampledWidth, sampledHeight, config,
+                  (long) sampledWidth * sampledHeight * BitmapDecoder.bytesPerPixel(config));
+   }
+
+   @Nullable
+   private Bitmap take(int width, int height, @NonNull Bitmap.Config config, long bytes) {
+      Key key;
+      if (bySize()) {
+         TreeMap<Integer, Integer> available = sizes.get(config);
+         Integer size = available == null || bytes > Integer.MAX_VALUE ? null : available.ceilingKey((int) bytes);
+         if (size == null || size > bytes * MAX_SIZE_MULTIPLE) {
+            misses++;
+            return null;
+         }
+         key = new Key(size, 0, config);
+      } else {
+         key = new Key(width, height, config);
+      }
+
+      ArrayDeque<Bitmap> group = groups.get(key);
+      Bitmap bitmap = group == null ? null : group.pollLast();
+      if (bitmap == null) {
+         misses++;
+         return null;
+      }
+      remove(bitmap, key, group);
+      hits++;
+      return bitmap;
+   }
+
+   private void remove(@NonNull Bitmap bitmap, @NonNull Key key, @NonNull ArrayDeque<Bitmap> group) {
+      if (group.isEmpty())
+         groups.remove(key);
+      lru.remove(bitmap);
+      if (bySize())
+         changeSizeCount(key.config, key.width, -1);
+      currentBytes -= allocationSize(bitmap);
+   }
+
+   private void changeSizeCount(@Nullable Bitmap.Config config, int size, int delta) {
+      TreeMap<Integer, Integer> available = sizes.get(config);
+      if (available == null)
+         sizes.put(config, available = new TreeMap<>());
+      Integer count = available.get(size);
+      int newCount = (count == null ? 0 : count) + delta;
+      if (newCount > 0)
+         available.put(size, newCount);
+      else
+         available.remove(size);
+   }
+
+   private void trimTo(long bytes) {
+      Iterator<Map.Entry<Bitmap, Key>> iterator = lru.entrySet().iterator();
+      while (currentBytes > bytes && iterator.hasNext()) {
+         Map.Entry<Bitmap, Key> eldest = iterator.next();
+         Bitmap bitmap = eldest.getKey();
+         Key key = eldest.getValue();
+         iterator.remove();
+
+         ArrayDeque<Bitmap> group = groups.get(key);
+         if (group != null) {
+            group.remove(bitmap);
+            if (group.isEmpty())
+               groups.remove(key);
+         }
+         if (bySize())
+            changeSizeCount(key.config, key.width, -1);
+         currentBytes -= allocationSize(bitmap);
+         bitmap.recycle();
+         evictions++;
+      }
+   }
+
+   /**
+    * Releases memory according to {@link ComponentCallbacks2#onTrimMemory(int)}
+    *
+    * @param level the trim level
+    */
+   public synchronized void trimMemory(int level) {
+      if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND)
+         trimTo(0);
+      else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN ||
+               level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL)
+         trimTo(maxBytes / 2);
+   }
+
+   public synchronized void clear() {
+      trimTo(0);
+   }
+
+   public synchronized void setMaxBytes(long maxBytes) {
+      this.maxBytes = maxBytes;
+      trimTo(maxBytes);
+   }
+
+   public synchronized long getMaxBytes() {
+      return maxBytes;
+   }
+
+   public synchronized long getCurrentBytes() {
+      return currentBytes;
+   }
+
+   public synchronized int getHitCount() {
+      return hits;
+   }
+
+   public synchronized int getMissCount() {
+      return misses;
+   }
+
+   public synchronized int getEvictionCount() {
+      return evictions;
+   }
+
+   @NonNull
+   @Override
+   public synchronized String toString() {
+      return String.format(Locale.US, "BitmapPool %d/%d bytes, %d hits, %d misses, %d puts, %d evictions",
+                           currentBytes, maxBytes, hits, misses, puts, evictions);
+   }
+}
@@ -0,0 +1,235 @@
+package com.dzboot.template.helpers;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Deletes files under a directory on a small bounded pool, one task per directory, so large cache trees
+ * are cleaned in parallel. Failures are counted and skipped, progress is reported on the main thread
+ * and a running clean can be cancelled. Directories left empty are removed, the root itself is kept.
+ */
+@SuppressWarnings("unused")
+public class CacheCleaner {
+
+   private static final ThreadPoolExecutor executor = BackgroundTask.newExecutor("CacheCleaner");
+
+
+   /**
+    * Decides which files to delete
+    */
+   public interface Filter {
+
+      /**
+       * @param file         a regular file under the root
+       * @param lastModified its modification time, already read
+       * @return true to delete it
+       */
+      boolean accept(@NonNull File file, long lastModified);
+   }
+
+   /**
+    * Receives progress on the main thread
+    */
+   public interface Listener {
+
+      void onProgress(long freedBytes, int freedFiles);
+
+      /**
+       * @param result final counters, see {@link Result#isCancelled()}
+       */
+      void onFinished(@NonNull Result result);
+   }
+
+   public static class Result {
+
+      private final long freedBytes;
+      private final int freedFiles;
+      private final int failedFiles;
+      private final boolean cancelled;
+
+      Result(long freedBytes, int freedFiles, int failedFiles, boolean cancelled) {
+         this.freedBytes = freedBytes;
+         this.freedFiles = freedFiles;
+         this.failedFiles = failedFiles;
+         this.cancelled = cancelled;
+      }
+
+      public long getFreedBytes() {
+         return freedBytes;
+      }
+
+      public int getFreedFiles() {
+         return freedFiles;
+      }
+
+      /**
+       * @return number of files and directories which could not be deleted or listed
+       */
+      public int getFailedFiles() {
+         return failedFiles;
+      }
+
+      public boolean isCancelled() {
+         return cancelled;
+      }
+
+      @NonNull
+      @Override
+      public String toString() {
+         return String.format(Locale.US, "freed %d bytes in %d files, %d failures%s",
+                              freedBytes, freedFiles, failedFiles, cancelled ? ", cancelled" : "");
+      }
+   }
+
+   /**
+    * A running clean, cancelling it keeps the files already deleted
+    */
+   public static class Task extends BackgroundTask<Result> {
+
+      private final Filter filter;
+      private final Listener listener;
+      private final AtomicLong freedBytes = new AtomicLong();
+      private final AtomicInteger freedFiles = new AtomicInteger();
+      private final AtomicInteger failedFiles = new AtomicInteger();
+
+      Task(@Nullable Filter filter, @Nullable Listener listener) {
+         this.filter = filter;
+         this.listener = listener;
+      }
+
+      public long getFreedBytes() {
+         return freedBytes.get();
+      }
+
+      public int getFreedFiles() {
+         return freedFiles.get();
+      }
+
+      void deleteFile(@NonNull File file) {
+         long length = file.length();
+         if (filter != null && !filter.accept(file, file.lastModified()))
+            return;
+
+         if (file.delete()) {
+            freedBytes.addAndGet(length);
+            freedFiles.incrementAndGet();
+            if (listener != null && isProgressDue()) {
+               long bytes = freedBytes.get();
+               int files = freedFiles.get();
+               postProgress(() -> listener.onProgress(bytes, files));
+            }
+         } else {
+            failedFiles.incrementAndGet();
+         }
+      }
+
+      void finish() {
+         Result finalResult = new Result(freedBytes.get(), freedFiles.get(), failedFiles.get(), isCancelled());
+         finish(finalResult, listener == null ? null : () -> listener.onFinished(finalResult));
+      }
+   }
+
+   /**
+    * Pending work of a directory: its own listing plus one unit per sub directory.
+    * The directory is removed when it reaches zero, then its parent is notified
+    */
+   private static class Node {
+
+      final File dir;
+      final Node parent;
+      final AtomicInteger pending = new AtomicInteger(1);
+
+      Node(@NonNull File dir, @Nullable Node parent) {
+         this.dir = dir;
+         this.parent = parent;
+      }
+   }
+
+
+   /**
+    * Starts cleaning everything under the root
+    *
+    * @param root     the directory to clean, kept itself
+    * @param filter   which files to delete, null for all of them
+    * @param listener progress and result receiver, called on the main thread
+    * @return the running task
+    */
+   @NonNull
+   public static Task clean(@NonNull File root, @Nullable Filter filter, @Nullable Listener listener) {
+      Task task = new Task(filter, listener);
+      Node rootNode = new Node(root, null);
+      executor.execute(() -> process(task, rootNode));
+      return task;
+   }
+
+   /**
+    * @param maxAgeMs files modified longer ago than this are deleted
+    * @return a filter on modification time
+    */
+   @NonNull
+   public static Filter olderThan(long maxAgeMs) {
+      return (file, lastModified) -> System.currentTimeMillis() - lastModified > maxAgeMs;
+   }
+
+   /**
+    * @param extensions the extensions to delete, without dot, case insensitive
+    * @return a filter on file extension
+    */
+   @NonNull
+   public static Filter withExtensions(@NonNull String... extensions) {
+      return (file, lastModified) -> {
+         String extension = FileUtils.getFileExtension(file);
+         for (String candidate : extensions) {
+            if (candidate.equalsIgnoreCase(extension))
+               return true;
+         }
+         return false;
+      };
+   }
+
+   private static void process(@NonNull Task task, @NonNull Node node) {
+      if (!task.isCancelled()) {
+         File[] children = node.dir.listFiles();
+         if (children == null) {
+            task.failedFiles.incrementAndGet();
+         } else {
+            for (File child : children) {
+               if (task.isCancelled())
+                  break;
+
+               //a linked directory is deleted as a link, its target may be outside the root
+               if (child.isDirectory() && !FileUtils.isSymlink(child)) {
+                  Node childNode = new Node(child, node);
+                  node.pending.incrementAndGet();
+                  executor.execute(() -> process(task, childNode));
+               } else {
+                  task.deleteFile(child);
+               }
+            }
+         }
+      }
+      complete(task, node);
+   }
+
+   private static void complete(@NonNull Task task, @NonNull Node node) {
+      while (node != null && node.pending.decrementAndGet() == 0) {
+         if (node.parent == null) {
+            task.finish();
+            return;
+         }
+
+         //fails harmlessly if a filter kept some files in it
+         String[] left = node.dir.list();
+         if (!task.isCancelled() && left != null && left.length == 0)
+            node.dir.delete();
+         node = node.parent;
+      }
+   }
+}
@@ -0,0 +1,378 @@
+package com.dzboot.template.helpers;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import timber.log.Timber;
+
+
+/**
+ * Keeps a cache directory under a byte budget by deleting the least recently used files first.
+ * Sizes and access times live in memory in access order and are persisted to a journal outside the cache
+ * directory, so the order survives restarts. {@link #recordAccess(File)} only touches the in-memory map and
+ * is cheap enough for every read path, a background sweeper saves the journal, picks up files written by
+ * code that does not report them and evicts.
+ */
+@SuppressWarnings("unused")
+public class CacheQuotaManager {
+
+   private static final String JOURNAL_HEADER = "cache-quota 1";
+   private static final long DEFAULT_SWEEP_INTERVAL_MS = TimeUnit.MINUTES.toMillis(5);
+   private static final long FULL_SCAN_INTERVAL_MS = TimeUnit.HOURS.toMillis(1);
+
+   private final File directory;
+   private final File journal;
+   private volatile long maxBytes;
+
+   //absolute path -> entry, least recently used first
+   private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+   private long totalBytes;
+   private boolean dirty;
+   private long lastFullScan;
+
+   private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "CacheQuota");
+      thread.setPriority(Thread.MIN_PRIORITY);
+      thread.setDaemon(true);
+      return thread;
+   });
+   private final AtomicBoolean sweepScheduled = new AtomicBoolean();
+   private ScheduledFuture<?> periodicSweep;
+
+
+   private static class Entry {
+
+      long size;
+      long lastAccess;
+
+      Entry(long size, long lastAccess) {
+         this.size = size;
+         this.lastAccess = lastAccess;
+      }
+   }
+
+
+   /**
+    * @param directory the directory to keep under budget
+    * @param journal   where to persist the entries, must not be inside the directory
+    * @param maxBytes  the byte budget
+    */
+   public CacheQuotaManager(@NonNull File directory, @NonNull File journal, long maxBytes) {
+      this.directory = directory;
+      this.journal = journal;
+      this.maxBytes = maxBytes;
+      sweeper.execute(this::loadJournal);
+   }
+
+   /**
+    * Creates a manager for the app's cache directory, sweeping every 5 minutes
+    *
+    * @param context  non-null context
+    * @param maxBytes the byte budget
+    * @return the started manager
+    */
+   @NonNull
+   public static CacheQuotaManager forCacheDir(@NonNull Context context, long maxBytes) {
+      CacheQuotaManager manager = new CacheQuotaManager(context.getCacheDir(),
+                                                        new File(context.getFilesDir(), "cache_quota.journal"),
+                                                        maxBytes);
+      manager.start(DEFAULT_SWEEP_INTERVAL_MS);
+      return manager;
+   }
+
+   /**
+    * Starts sweeping periodically
+    *
+    * @param intervalMs time between two sweeps
+    */
+   public synchronized void start(long intervalMs) {
+      if (periodicSweep != null)
+         periodicSweep.cancel(false);
+      periodicSweep = sweeper.scheduleWithFixedDelay(this::sweep, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * Stops sweeping and saves the journal
+    */
+   public synchronized void stop() {
+      if (periodicSweep != null)
+         periodicSweep.cancel(false);
+      periodicSweep = null;
+      sweeper.execute(this::saveJournal);
+   }
+
+   public void setMaxBytes(long maxBytes) {
+      this.maxBytes = maxBytes;
+      requestSweep();
+   }
+
+   public long getMaxBytes() {
+      return maxBytes;
+   }
+
+   /**
+    * @return bytes currently accounted for
+    */
+   public long getTotalBytes() {
+      synchronized (entries) {
+         return totalBytes;
+      }
+   }
+
+   /**
+    * Marks the file as just used, call it whenever a cached file is read. Unknown files are picked up
+    * by the next full scan, so this never touches the disk
+    *
+    * @param file the cached file
+    */
+   public void recordAccess(@NonNull File file) {
+      long now = System.currentTimeMillis();
+      synchronized (entries) {
+         Entry entry = entries.get(file.getPath());
+         if (entry != null) {
+            entry.lastAccess = now;
+            dirty = true;
+         }
+      }
+   }
+
+   /**
+    * Accounts a file that was just written or replaced, sweeps in the background if it breaks the budget
+    *
+    * @param file the cached file
+    */
+   public void recordWrite(@NonNull File file) {
+      long size = file.length();
+      long now = System.currentTimeMillis();
+      boolean overBudget;
+      synchronized (entries) {
+         Entry entry = entries.get(file.getPath());
+         if (entry == null) {
+            entries.put(file.getPath(), new Entry(size, now));
+         } else {
+            totalBytes -= entry.size;
+            entry.size = size;
+            entry.lastAccess = now;
+         }
+         totalBytes += size;
+         dirty = true;
+         overBudget = totalBytes > maxBytes;
+      }
+      if (overBudget)
+         requestSweep();
+   }
+
+   /**
+    * Forgets a file the caller deleted itself
+    *
+    * @param file the deleted file
+    */
+   public void recordDelete(@NonNull File file) {
+      synchronized (entries) {
+         Entry entry = entries.remove(file.getPath());
+         if (entry != null) {
+            totalBytes -= entry.size;
+            dirty = true;
+         }
+      }
+   }
+
+   /**
+    * Sweeps as soon as possible on the background thread
+    */
+   public void requestSweep() {
+      if (sweepScheduled.compareAndSet(false, true))
+         sweeper.execute(() -> {
+            sweepScheduled.set(false);
+            sweep();
+         });
+   }
+
+   /**
+    * Rescans the directory if needed, evicts the least recently used files above budget and saves the journal
+    */
+   private void sweep() {
+      try {
+         long now = System.currentTimeMillis();
+         if (now - lastFullScan > FULL_SCAN_INTERVAL_MS) {
+            fullScan();
+            lastFullScan = now;
+         }
+         evict();
+         if (dirty)
+            saveJournal();
+      } catch (Exception e) {
+         Timber.e(e, "Cache sweep failed");
+      }
+   }
+
+   private void evict() {
+      while (true) {
+         String path;
+         synchronized (entries) {
+            if (totalBytes <= maxBytes || entries.isEmpty())
+               return;
+
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            Map.Entry<String, Entry> eldest = iterator.next();
+            path = eldest.getKey();
+            totalBytes -= eldest.getValue().size;
+            iterator.remove();
+            dirty = true;
+         }
+
+         File file = new File(path);
+         if (file.exists() && !file.delete())
+            Timber.w("Could not evict %s", path);
+      }
+   }
+
+   /**
+    * Walks the directory to add files nobody reported and drop entries whose file is gone,
+    * then rebuilds the access order from the access times
+    */
+   private void fullScan() {
+      Map<String, Long> sizes = new LinkedHashMap<>();
+      Map<String, Long> modified = new LinkedHashMap<>();
+      ArrayDeque<File> pending = new ArrayDeque<>();
+      pending.add(directory);
+      while (!pending.isEmpty()) {
+         File[] children = pending.poll().listFiles();
+         if (children == null)
+            continue;
+         for (File child : children) {
+            //a link may point to an ancestor or outside the cache, it is neither followed nor evicted
+            if (FileUtils.isSymlink(child))
+               continue;
+            if (child.isDirectory()) {
+               pending.add(child);
+            } else {
+               sizes.put(child.getPath(), child.length());
+               modified.put(child.getPath(), child.lastModified());
+            }
+         }
+      }
+
+      synchronized (entries) {
+         List<Map.Entry<String, Entry>> merged = new ArrayList<>(sizes.size());
+         Set<String> known = new HashSet<>();
+         for (Map.Entry<String, Entry> existing : entries.entrySet()) {
+            Long size = sizes.get(existing.getKey());
+            if (size != null) {
+               existing.getValue().size = size;
+               merged.add(existing);
+               known.add(existing.getKey());
+            }
+         }
+         for (Map.Entry<String, Long> scanned : sizes.entrySet()) {
+            if (!known.contains(scanned.getKey()))
+               merged.add(new AbstractMap.SimpleEntry<>(
+                     scanned.getKey(), new Entry(scanned.getValue(), modified.get(scanned.getKey()))));
+         }
+
+         Collections.sort(merged, (first, second) -> {
+            long a = first.getValue().lastAccess, b = second.getValue().lastAccess;
+            return a < b ? -1 : a == b ? 0 : 1;
+         });
+         entries.clear();
+         totalBytes = 0;
+         for (Map.Entry<String, Entry> entry : merged) {
+            entries.put(entry.getKey(), entry.getValue());
+            totalBytes += entry.getValue().size;
+         }
+         dirty = true;
+      }
+   }
+
+   private void loadJournal() {
+      if (!journal.isFile())
+         return;
+
+      List<String[]> lines = new ArrayList<>();
+      try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journal), "UTF-8"))) {
+         if (!JOURNAL_HEADER.equals(reader.readLine()))
+            return;
+         String line;
+         while ((line = reader.readLine()) != null) {
+            String[] parts = line.split("\t", 3);
+            if (parts.length == 3)
+               lines.add(parts);
+         }
+      } catch (IOException e) {
+         Timber.w(e, "Could not read the cache journal");
+         return;
+      }
+
+      //the journal is written least recently used first
+      synchronized (entries) {
+         for (String[] parts : lines) {
+            try {
+               long lastAccess = Long.parseLong(parts[0]);
+               long size = Long.parseLong(parts[1]);
+               if (!entries.containsKey(parts[2])) {
+                  entries.put(parts[2], new Entry(size, lastAccess));
+                  totalBytes += size;
+               }
+            } catch (NumberFormatException ignored) {}
+         }
+         //the journal may be stale, trust the directory on the first sweep
+         lastFullScan = 0;
+      }
+   }
+
+   /**
+    * Writes a snapshot of the entries to a temporary file then renames it over the journal
+    */
+   private void saveJournal() {
+      List<String> lines;
+      synchronized (entries) {
+         lines = new ArrayList<>(entries.size());
+         for (Map.Entry<String, Entry> entry : entries.entrySet())
+            lines.add(entry.getValue().lastAccess + "\t" + entry.getValue().size + "\t" + entry.getKey());
+         dirty = false;
+      }
+
+      File temp = new File(journal.getPath() + ".tmp");
+      try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), "UTF-8"))) {
+         writer.write(JOURNAL_HEADER);
+         writer.write('\n');
+         for (String line : lines) {
+            writer.write(line);
+            writer.write('\n');
+         }
+      } catch (IOException e) {
+         Timber.w(e, "Could not write the cache journal");
+         synchronized (entries) {
+            dirty = true;
+         }
+         return;
+      }
+      if (!temp.renameTo(journal))
+         Timber.w("Could not replace the cache journal");
+   }
+}
@@ -0,0 +1,596 @@
+package com.dzboot.template.helpers;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import timber.log.Timber;
+
+
+/**
+ * Stores imported files once per content. Each blob is named after the hex SHA-256 of its bytes and reference
+ * counted, so importing the same photo twice costs a hash pass instead of a second copy. Seekable sources are
+ * hashed first and only copied when the content is new, streams are hashed while they are copied.
+ * <p>
+ * Readers hold a {@link Lease} while they use a blob, a blob whose last reference is released is deleted only
+ * once its last lease is closed. Reference counts are persisted in an index next to the blobs.
+ * <p>
+ * The index is a journal of reference count changes, each change appends one line and is synced with the others
+ * waiting at that time, and it is rewritten as one line per blob once it holds many more lines than blobs. It is
+ * read on a background thread, which also deletes the blobs left without reference by a crash; the first call
+ * waits for it.
+ */
+@SuppressWarnings("unused")
+public class ContentStore {
+
+   private static final String ALGORITHM = "SHA-256";
+   private static final String INDEX_HEADER = "content-store 1";
+   private static final int BUFFER_SIZE = 64 * 1024;
+   //journal lines tolerated before compacting, on top of twice the number of blobs
+   private static final int COMPACT_SLACK = 1000;
+
+   private static volatile ContentStore instance;
+
+   private final File blobs;
+   private final File temp;
+   private final File index;
+
+   private final CountDownLatch loaded = new CountDownLatch(1);
+   //guarded by this
+   private final Map<String, Entry> entries = new HashMap<>();
+   //guarded by this, changes applied to entries but not yet appended to the journal
+   private final StringBuilder unsaved = new StringBuilder();
+   private int unsavedLines;
+
+   //guarded by journalLock, taken before this when both are needed
+   private final Object journalLock = new Object();
+   private FileOutputStream journal;
+   private int journalLines;
+
+
+   private static class Entry {
+
+      int references;
+      int leases;
+   }
+
+
+   /**
+    * An open blob, the file stays readable until the lease is closed even if its last reference is released
+    */
+   public class Lease implements Closeable {
+
+      private final String digest;
+      private boolean closed;
+
+      Lease(@NonNull String digest) {
+         this.digest = digest;
+      }
+
+      @NonNull
+      public String getDigest() {
+         return digest;
+      }
+
+      /**
+       * @return the blob, must not be modified
+       */
+      @NonNull
+      public File getFile() {
+         return blobFile(digest);
+      }
+
+      @NonNull
+      public InputStream openStream() throws FileNotFoundException {
+         return new FileInputStream(getFile());
+      }
+
+      @Override
+      public void close() {
+         synchronized (ContentStore.this) {
+            if (closed)
+               return;
+            closed = true;
+            Entry entry = entries.get(digest);
+            if (entry != null) {
+               entry.leases--;
+               deleteIfUnused(digest, entry);
+            }
+         }
+      }
+   }
+
+
+   /**
+    * @param root the directory holding the blobs and the index
+    */
+   public ContentStore(@NonNull File root) {
+      blobs = new File(root, "blobs");
+      temp = new File(root, "tmp");
+      index = new File(root, "refs");
+      Thread loader = new Thread(this::load, "ContentStore");
+      loader.setPriority(Thread.NORM_PRIORITY - 1);
+      loader.start();
+   }
+
+   /**
+    * @param context non-null context
+    * @return the store in the app's files directory
+    */
+   @NonNull
+   public static ContentStore get(@NonNull Context context) {
+      ContentStore store = instance;
+      if (store == null) {
+         synchronized (ContentStore.class) {
+            store = instance;
+            if (store == null)
+               instance = store = new ContentStore(new File(context.getFilesDir(), "content_store"));
+         }
+      }
+      return store;
+   }
+
+   /**
+    * Adds a reference to the content of the Uri, copying it only if the store doesn't have it yet
+    *
+    * @param context non-null context
+    * @param uri     the Uri to import
+    * @return the digest naming the blob
+    * @throws IOException if the Uri can't be read or the blob written
+    */
+   @NonNull
+   @WorkerThread
+   public String put(@NonNull Context context, @NonNull Uri uri) throws IOException {
+      ParcelFileDescriptor descriptor = context.getContentResolver().openFileDescriptor(uri, "r");
+      if (descriptor == null)
+         throw new FileNotFoundException("No descriptor for " + uri);
+
+      try (ParcelFileDescriptor ignored = descriptor;
+           FileInputStream input = new FileInputStream(descriptor.getFileDescriptor())) {
+         //negative for pipes and sockets, which can only be read once
+         if (descriptor.getStatSize() >= 0) {
+            FileChannel channel = input.getChannel();
+            String digest = hash(channel);
+            if (addReferenceIfPresent(digest))
+               return digest;
+            channel.position(0);
+         }
+         return store(input);
+      }
+   }
+
+   /**
+    * Adds a reference to the content of the file, copying it only if the store doesn't have it yet
+    *
+    * @param source the file to import
+    * @return the digest naming the blob
+    * @throws IOException if the file can't be read or the blob written
+    */
+   @NonNull
+   @WorkerThread
+   public String put(@NonNull File source) throws IOException {
+      try (FileInputStream input = new FileInputStream(source)) {
+         String digest = hash(input.getChannel());
+         if (addReferenceIfPresent(digest))
+            return digest;
+         input.getChannel().position(0);
+         return store(input);
+      }
+   }
+
+   /**
+    * Adds a reference to the content of the stream, hashing it while it is copied
+    *
+    * @param input the stream to import, not closed
+    * @return the digest naming the blob
+    * @throws IOException if the stream can't be read or the blob written
+    */
+   @NonNull
+   @WorkerThread
+   public String put(@NonNull InputStream input) throws IOException {
+      return store(input);
+   }
+
+   /**
+    * Opens a blob for reading
+    *
+    * @param digest the blob's digest
+    * @return a lease to close when done, null if the store doesn't have it
+    */
+   @Nullable
+   public Lease open(@NonNull String digest) {
+      digest = normalize(digest);
+      awaitLoaded();
+      synchronized (this) {
+         Entry entry = entries.get(digest);
+         if (entry == null || entry.references == 0)
+            return null;
+         entry.leases++;
+         return new Lease(digest);
+      }
+   }
+
+   /**
+    * Drops a reference, the blob is deleted once it has neither references nor open leases
+    *
+    * @param digest the blob's digest
+    * @return true if the store had a reference to drop
+    */
+   public boolean release(@NonNull String digest) {
+      digest = normalize(digest);
+      awaitLoaded();
+      synchronized (this) {
+         Entry entry = entries.get(digest);
+         if (entry == null || entry.references == 0)
+            return false;
+         entry.references--;
+         record(-1, digest);
+         deleteIfUnused(digest, entry);
+      }
+      saveJournal();
+      return true;
+   }
+
+   public boolean contains(@NonNull String digest) {
+      digest = normalize(digest);
+      awaitLoaded();
+      synchronized (this) {
+         Entry entry = entries.get(digest);
+         return entry != null && entry.references > 0;
+      }
+   }
+
+   public int getReferenceCount(@NonNull String digest) {
+      digest = normalize(digest);
+      awaitLoaded();
+      synchronized (this) {
+         Entry entry = entries.get(digest);
+         return entry == null ? 0 : entry.references;
+      }
+   }
+
+   private boolean addReferenceIfPresent(@NonNull String digest) {
+      awaitLoaded();
+      synchronized (this) {
+         Entry entry = entries.get(digest);
+         if (entry == null || !blobFile(digest).isFile())
+            return false;
+         entry.references++;
+         record(1, digest);
+      }
+      saveJournal();
+      return true;
+   }
+
+   /**
+    * Copies the stream to a temporary file while hashing it, then moves it in place or drops it as a duplicate
+    */
+   @NonNull
+   private String store(@NonNull InputStream input) throws IOException {
+      awaitLoaded();
+      if (!temp.isDirectory() && !temp.mkdirs() && !temp.isDirectory())
+         throw new IOException("Could not create " + temp);
+
+      MessageDigest md = newDigest();
+      File part = File.createTempFile("import", ".part", temp);
+      try {
+         try (FileOutputStream output = new FileOutputStream(part)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+               md.update(buffer, 0, read);
+               output.write(buffer, 0, read);
+            }
+            output.getFD().sync();
+         }
+         String digest = DataUtils.INSTANCE.bytesToHex(md.digest());
+
+         synchronized (this) {
+            Entry entry = entries.get(digest);
+            File blob = blobFile(digest);
+            if (entry == null || !blob.isFile()) {
+               File parent = blob.getParentFile();
+               if (parent != null && !parent.isDirectory())
+                  parent.mkdirs();
+               if (!part.renameTo(blob))
+                  throw new IOException("Could not move " + part + " to " + blob);
+               if (entry == null)
+                  entries.put(digest, entry = new Entry());
+            }
+            entry.references++;
+            record(1, digest);
+         }
+         saveJournal();
+         return digest;
+      } finally {
+         //already renamed unless it was a duplicate or failed
+         part.delete();
+      }
+   }
+
+   private void deleteIfUnused(@NonNull String digest, @NonNull Entry entry) {
+      if (entry.references > 0 || entry.leases > 0)
+         return;
+      entries.remove(digest);
+      File blob = blobFile(digest);
+      if (blob.exists() && !blob.delete())
+         Timber.w("Could not delete blob %s", digest);
+   }
+
+   @NonNull
+   private File blobFile(@NonNull String digest) {
+      //two levels keep directories small
+      return new File(new File(blobs, digest.substring(0, 2)), digest);
+   }
+
+   @NonNull
+   private static String hash(@NonNull FileChannel channel) throws IOException {
+      MessageDigest md = newDigest();
+      ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+      channel.position(0);
+      while (channel.read(buffer) != -1) {
+         buffer.flip();
+         md.update(buffer);
+         buffer.clear();
+      }
+      return DataUtils.INSTANCE.bytesToHex(md.digest());
+   }
+
+   @NonNull
+   private static MessageDigest newDigest() {
+      try {
+         return MessageDigest.getInstance(ALGORITHM);
+      } catch (NoSuchAlgorithmException e) {
+         //every Android release has SHA-256
+         throw new IllegalStateException(e);
+      }
+   }
+
+   @NonNull
+   private static String normalize(@NonNull String digest) {
+      return digest.toUpperCase(Locale.US);
+   }
+
+   private void awaitLoaded() {
+      boolean interrupted = false;
+      while (true) {
+         try {
+            loaded.await();
+            break;
+         } catch (InterruptedException e) {
+            interrupted = true;
+         }
+      }
+      if (interrupted)
+         Thread.currentThread().interrupt();
+   }
+
+   /**
+    * Reads the index, deletes what a crash left behind and compacts the journal, on the loader thread
+    */
+   private void load() {
+      try {
+         synchronized (journalLock) {
+            Map<String, Integer> counts = readIndex();
+            synchronized (this) {
+               for (Map.Entry<String, Integer> count : counts.entrySet()) {
+                  if (count.getValue() <= 0 || !blobFile(count.getKey()).isFile())
+                     continue;
+                  Entry entry = new Entry();
+                  entry.references = count.getValue();
+                  entries.put(count.getKey(), entry);
+               }
+            }
+            deleteOrphans();
+            compact();
+         }
+      } finally {
+         loaded.countDown();
+      }
+   }
+
+   /**
+    * @return the reference count of each digest, the sum of its journal lines
+    */
+   @NonNull
+   private Map<String, Integer> readIndex() {
+      Map<String, Integer> counts = new HashMap<>();
+      if (!index.isFile())
+         return counts;
+
+      try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(index), "UTF-8"))) {
+         if (!INDEX_HEADER.equals(reader.readLine()))
+            return counts;
+         String line;
+         while ((line = reader.readLine()) != null) {
+            int space = line.indexOf(' ');
+            if (space <= 0)
+               continue;
+            String digest = line.substring(space + 1);
+            if (digest.length() < 2)
+               continue;
+            int delta;
+            try {
+               delta = Integer.parseInt(line.substring(0, space));
+            } catch (NumberFormatException e) {
+               //a line torn by a crash while it was appended
+               continue;
+            }
+            Integer count = counts.get(digest);
+            counts.put(digest, (count == null ? 0 : count) + delta);
+         }
+      } catch (IOException e) {
+         Timber.w(e, "Could not read the content store index");
+      }
+      return counts;
+   }
+
+   /**
+    * Deletes the blobs the index doesn't reference, stored right before a crash, and the interrupted imports
+    */
+   private void deleteOrphans() {
+      File[] partial = temp.listFiles();
+      if (partial != null)
+         for (File file : partial)
+            file.delete();
+
+      File[] prefixes = blobs.listFiles();
+      if (prefixes == null)
+         return;
+      for (File prefix : prefixes) {
+         File[] files = prefix.listFiles();
+         if (files == null)
+            continue;
+         for (File file : files) {
+            boolean referenced;
+            synchronized (this) {
+               referenced = entries.containsKey(file.getName());
+            }
+            if (!referenced && !file.delete())
+               Timber.w("Could not delete orphan blob %s", file.getName());
+         }
+         //only succeeds once empty
+         prefix.delete();
+      }
+   }
+
+   /**
+    * Queues a reference count change for the journal, saved by the next {@link #saveJournal()}
+    */
+   private void record(int delta, @NonNull String digest) {
+      unsaved.append(delta).append(' ').append(digest).append('\n');
+      unsavedLines++;
+   }
+
+   /**
+    * Appends and syncs the queued changes, including those of other threads, outside the lock guarding the
+    * entries so readers don't wait for the disk
+    */
+   private void saveJournal() {
+      synchronized (journalLock) {
+         String lines;
+         int count;
+         int blobCount;
+         synchronized (this) {
+            //already saved by another thread
+            if (unsavedLines == 0)
+               return;
+            lines = unsaved.toString();
+            count = unsavedLines;
+            unsaved.setLength(0);
+            unsavedLines = 0;
+            blobCount = entries.size();
+         }
+
+         if (journal != null) {
+            try {
+               journal.write(lines.getBytes("UTF-8"));
+               journal.getFD().sync();
+               journalLines += count;
+               if (journalLines > 2 * blobCount + COMPACT_SLACK)
+                  compact();
+               return;
+            } catch (IOException e) {
+               Timber.w(e, "Could not append to the content store index");
+               //part of the lines may be in the file, only a compaction may write the index from now on
+               closeJournal();
+            }
+         }
+
+         //kept queued until a snapshot including them replaces the index
+         synchronized (this) {
+            unsaved.insert(0, lines);
+            unsavedLines += count;
+         }
+         compact();
+      }
+   }
+
+   /**
+    * Writes one line per blob to a temporary file, renames it over the index and appends to it from then on.
+    * The queued changes included in the snapshot are dropped once it replaced the index. Must hold journalLock
+    */
+   private void compact() {
+      StringBuilder snapshot = new StringBuilder(INDEX_HEADER).append('\n');
+      int lines = 0;
+      int includedChars;
+      int includedLines;
+      synchronized (this) {
+         includedChars = unsaved.length();
+         includedLines = unsavedLines;
+         for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (entry.getValue().references == 0)
+               continue;
+            snapshot.append(entry.getValue().references).append(' ').append(entry.getKey()).append('\n');
+            lines++;
+         }
+      }
+
+      File next = new File(index.getPath() + ".tmp");
+      File parent = index.getParentFile();
+      if (parent != null && !parent.isDirectory())
+         parent.mkdirs();
+      try (FileOutputStream stream = new FileOutputStream(next);
+           BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(stream, "UTF-8"))) {
+         writer.append(snapshot);
+         writer.flush();
+         stream.getFD().sync();
+      } catch (IOException e) {
+         Timber.w(e, "Could not write the content store index");
+         next.delete();
+         return;
+      }
+      if (!next.renameTo(index)) {
+         Timber.w("Could not replace the content store index");
+         return;
+      }
+      synchronized (this) {
+         //changes queued after the snapshot stay queued
+         unsaved.delete(0, includedChars);
+         unsavedLines -= includedLines;
+      }
+
+      closeJournal();
+      try {
+         journal = new FileOutputStream(index, true);
+         journalLines = lines;
+      } catch (IOException e) {
+         Timber.w(e, "Could not open the content store index");
+      }
+   }
+
+   private void closeJournal() {
+      if (journal == null)
+         return;
+      try {
+         journal.close();
+      } catch (IOException e) {
+         Timber.w(e, "Could not close the content store index");
+      }
+      journal = null;
+   }
+}
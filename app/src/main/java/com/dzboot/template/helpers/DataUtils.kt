@@ -4,8 +4,7 @@ import android.annotation.SuppressLint
 import android.content.ClipData
 import android.content.ClipboardManager
 import android.content.Context
-import okhttp3.internal.and
-import java.util.*
+import java.nio.ByteBuffer
 
 
 @SuppressLint("unused")
@@ -30,15 +29,16 @@ object DataUtils {
     * @param bytes bytes
     * @return hex string
     */
-   fun bytesToHex(bytes: ByteArray): String {
-      val sbuf = StringBuilder()
-      for (aByte in bytes) {
-         val intVal = aByte and 0xff
-         if (intVal < 0x10) sbuf.append("0")
-         sbuf.append(Integer.toHexString(intVal).toUpperCase(Locale.ROOT))
-      }
-      return sbuf.toString()
-   }
+   fun bytesToHex(bytes: ByteArray): String = HexCodec.encode(bytes)
+
+   /**
+    * Convert hex string to byte array
+    *
+    * @param hex hex string, upper or lower case
+    * @return bytes
+    * @throws IllegalArgumentException if the string is not valid hex
+    */
+   fun hexToBytes(hex: CharSequence): ByteArray = HexCodec.decode(hex)
 
    /**
     * Get utf8 byte array.
@@ -48,9 +48,26 @@ object DataUtils {
     */
    fun getUTF8Bytes(str: String): ByteArray? {
       return try {
-         str.toByteArray(charset("UTF-8"))
+         str.toByteArray(Charsets.UTF_8)
       } catch (ex: Exception) {
          null
       }
    }
+
+   /**
+    * Writes the utf8 bytes of the text into the buffer without allocating
+    *
+    * @param text the text
+    * @param out  the buffer, must have [getUTF8Length] bytes remaining
+    * @return number of bytes written
+    */
+   fun putUTF8Bytes(text: CharSequence, out: ByteBuffer): Int = Utf8Encoder.encode(text, out)
+
+   /**
+    * Get the utf8 length of the text without encoding it
+    *
+    * @param text the text
+    * @return number of bytes
+    */
+   fun getUTF8Length(text: CharSequence): Int = Utf8Encoder.encodedLength(text)
 }
\ No newline at end of file
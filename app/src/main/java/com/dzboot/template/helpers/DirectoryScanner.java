@@ -0,0 +1,407 @@
+package com.dzboot.template.helpers;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import timber.log.Timber;
+
+
+/**
+ * Computes the size and file count of every directory under a root, walking sub directories in parallel on a
+ * small bounded pool. A snapshot of each directory's modification time, own files and sub directories can be
+ * persisted: the next scan reuses the totals of directories whose modification time didn't change instead of
+ * listing them and reading the size of every file again. Sub directories are still visited, their changes don't
+ * touch the parent's modification time.
+ * <p>
+ * A directory's modification time only changes when entries are added, removed or renamed, so a file rewritten in
+ * place keeps its old size until something else changes in its directory or {@link #scan} is called without snapshot.
+ * Symbolic links to directories are not followed.
+ */
+@SuppressWarnings("unused")
+public class DirectoryScanner {
+
+   private static final int SNAPSHOT_MAGIC = 0x44495253; //"DIRS"
+   private static final int SNAPSHOT_VERSION = 1;
+   private static final ThreadPoolExecutor executor = BackgroundTask.newExecutor("DirectoryScanner");
+
+
+   /**
+    * Receives progress on the main thread
+    */
+   public interface Listener {
+
+      void onProgress(int scannedDirectories, long scannedBytes);
+
+      /**
+       * @param result the aggregates, see {@link Result#isCancelled()}
+       */
+      void onFinished(@NonNull Result result);
+   }
+
+   /**
+    * Aggregates of one directory
+    */
+   public static class DirectoryStats {
+
+      private final String path;
+      private final long lastModified;
+      private final long ownBytes;
+      private final int ownFiles;
+      private final long totalBytes;
+      private final int totalFiles;
+      private final List<String> subdirectories;
+
+      DirectoryStats(@NonNull String path, long lastModified, long ownBytes, int ownFiles, long totalBytes,
+                     int totalFiles, @NonNull List<String> subdirectories) {
+         this.path = path;
+         this.lastModified = lastModified;
+         this.ownBytes = ownBytes;
+         this.ownFiles = ownFiles;
+         this.totalBytes = totalBytes;
+         this.totalFiles = totalFiles;
+         this.subdirectories = subdirectories;
+      }
+
+      @NonNull
+      public String getPath() {
+         return path;
+      }
+
+      public long getLastModified() {
+         return lastModified;
+      }
+
+      /**
+       * @return bytes of the files directly in this directory
+       */
+      public long getOwnBytes() {
+         return ownBytes;
+      }
+
+      public int getOwnFiles() {
+         return ownFiles;
+      }
+
+      /**
+       * @return bytes of all the files under this directory
+       */
+      public long getTotalBytes() {
+         return totalBytes;
+      }
+
+      public int getTotalFiles() {
+         return totalFiles;
+      }
+
+      /**
+       * @return names of the direct sub directories
+       */
+      @NonNull
+      public List<String> getSubdirectories() {
+         return subdirectories;
+      }
+   }
+
+   public static class Result {
+
+      private final String root;
+      private final Map<String, DirectoryStats> directories;
+      private final int scannedDirectories;
+      private final int reusedDirectories;
+      private final int failedDirectories;
+      private final boolean cancelled;
+
+      Result(@NonNull String root, @NonNull Map<String, DirectoryStats> directories, int scannedDirectories,
+             int reusedDirectories, int failedDirectories, boolean cancelled) {
+         this.root = root;
+         this.directories = directories;
+         this.scannedDirectories = scannedDirectories;
+         this.reusedDirectories = reusedDirectories;
+         this.failedDirectories = failedDirectories;
+         this.cancelled = cancelled;
+      }
+
+      /**
+       * @param directory the root or a directory under it
+       * @return its aggregates, null if it wasn't scanned
+       */
+      @Nullable
+      public DirectoryStats get(@NonNull File directory) {
+         return directories.get(directory.getPath());
+      }
+
+      /**
+       * @return aggregates by directory path
+       */
+      @NonNull
+      public Map<String, DirectoryStats> getDirectories() {
+         return directories;
+      }
+
+      public long getTotalBytes() {
+         DirectoryStats stats = directories.get(root);
+         return stats == null ? 0 : stats.totalBytes;
+      }
+
+      public int getTotalFiles() {
+         DirectoryStats stats = directories.get(root);
+         return stats == null ? 0 : stats.totalFiles;
+      }
+
+      /**
+       * @return directories which were listed
+       */
+      public int getScannedDirectories() {
+         return scannedDirectories;
+      }
+
+      /**
+       * @return directories whose files were taken from the snapshot
+       */
+      public int getReusedDirectories() {
+         return reusedDirectories;
+      }
+
+      public int getFailedDirectories() {
+         return failedDirectories;
+      }
+
+      public boolean isCancelled() {
+         return cancelled;
+      }
+
+      @NonNull
+      @Override
+      public String toString() {
+         return String.format(Locale.US, "%d bytes in %d files, %d directories scanned, %d reused, %d failures%s",
+                              getTotalBytes(), getTotalFiles(), scannedDirectories, reusedDirectories,
+                              failedDirectories, cancelled ? ", cancelled" : "");
+      }
+   }
+
+   /**
+    * A running scan, cancelling it leaves the snapshot untouched
+    */
+   public static class Task extends BackgroundTask<Result> {
+
+      private final String root;
+      private final File snapshot;
+      //set by the first worker before any directory is processed
+      private Map<String, DirectoryStats> previous = Collections.emptyMap();
+      private final Listener listener;
+      private final Map<String, DirectoryStats> directories = new ConcurrentHashMap<>();
+      private final AtomicInteger scannedDirectories = new AtomicInteger();
+      private final AtomicInteger reusedDirectories = new AtomicInteger();
+      private final AtomicInteger failedDirectories = new AtomicInteger();
+      private final AtomicLong scannedBytes = new AtomicLong();
+
+      Task(@NonNull String root, @Nullable File snapshot, @Nullable Listener listener) {
+         this.root = root;
+         this.snapshot = snapshot;
+         this.listener = listener;
+      }
+
+      private void reportProgress(long bytes) {
+         scannedBytes.addAndGet(bytes);
+         if (listener == null || !isProgressDue())
+            return;
+
+         int scanned = scannedDirectories.get() + reusedDirectories.get();
+         long total = scannedBytes.get();
+         postProgress(() -> listener.onProgress(scanned, total));
+      }
+
+      void finish() {
+         if (!isCancelled() && snapshot != null)
+            saveSnapshot(snapshot, root, directories);
+
+         Result finalResult = new Result(root, Collections.unmodifiableMap(directories), scannedDirectories.get(),
+                                         reusedDirectories.get(), failedDirectories.get(), isCancelled());
+         finish(finalResult, listener == null ? null : () -> listener.onFinished(finalResult));
+      }
+   }
+
+   /**
+    * Pending work of a directory: its own listing plus one unit per sub directory.
+    * Its stats are final when it reaches zero, then they are added to the parent
+    */
+   private static class Node {
+
+      final File dir;
+      final Node parent;
+      final AtomicInteger pending = new AtomicInteger(1);
+      final AtomicLong totalBytes = new AtomicLong();
+      final AtomicInteger totalFiles = new AtomicInteger();
+      long lastModified;
+      long ownBytes;
+      int ownFiles;
+      List<String> subdirectories = Collections.emptyList();
+
+      Node(@NonNull File dir, @Nullable Node parent) {
+         this.dir = dir;
+         this.parent = parent;
+      }
+   }
+
+
+   /**
+    * Starts scanning the root
+    *
+    * @param root     the directory to measure
+    * @param snapshot file to reuse unchanged directories from and to save the new state to, null to scan everything
+    * @param listener progress and result receiver, called on the main thread
+    * @return the running task
+    */
+   @NonNull
+   public static Task scan(@NonNull File root, @Nullable File snapshot, @Nullable Listener listener) {
+      Task task = new Task(root.getPath(), snapshot, listener);
+      executor.execute(() -> {
+         //the executor's queue publishes it to the workers processing the sub directories
+         if (snapshot != null)
+            task.previous = loadSnapshot(snapshot, root.getPath());
+         process(task, new Node(root, null));
+      });
+      return task;
+   }
+
+   private static void process(@NonNull Task task, @NonNull Node node) {
+      if (!task.isCancelled()) {
+         node.lastModified = node.dir.lastModified();
+         DirectoryStats old = task.previous.get(node.dir.getPath());
+         if (old != null && old.lastModified == node.lastModified && node.lastModified != 0) {
+            node.ownBytes = old.ownBytes;
+            node.ownFiles = old.ownFiles;
+            node.subdirectories = old.subdirectories;
+            task.reusedDirectories.incrementAndGet();
+         } else {
+            list(task, node);
+         }
+         task.reportProgress(node.ownBytes);
+
+         for (String name : node.subdirectories) {
+            if (task.isCancelled())
+               break;
+            Node child = new Node(new File(node.dir, name), node);
+            node.pending.incrementAndGet();
+            executor.execute(() -> process(task, child));
+         }
+      }
+      complete(task, node);
+   }
+
+   private static void list(@NonNull Task task, @NonNull Node node) {
+      File[] children = node.dir.listFiles();
+      if (children == null) {
+         task.failedDirectories.incrementAndGet();
+         return;
+      }
+
+      List<String> subdirectories = new ArrayList<>();
+      for (File child : children) {
+         if (child.isDirectory()) {
+            //a link to an ancestor would be walked forever, and a link elsewhere counted twice
+            if (!FileUtils.isSymlink(child))
+               subdirectories.add(child.getName());
+         } else {
+            node.ownBytes += child.length();
+            node.ownFiles++;
+         }
+      }
+      node.subdirectories = subdirectories;
+      task.scannedDirectories.incrementAndGet();
+   }
+
+   private static void complete(@NonNull Task task, @NonNull Node node) {
+      while (node != null && node.pending.decrementAndGet() == 0) {
+         long totalBytes = node.totalBytes.addAndGet(node.ownBytes);
+         int totalFiles = node.totalFiles.addAndGet(node.ownFiles);
+         task.directories.put(node.dir.getPath(),
+                              new DirectoryStats(node.dir.getPath(), node.lastModified, node.ownBytes, node.ownFiles,
+                                                 totalBytes, totalFiles, node.subdirectories));
+         if (node.parent == null) {
+            task.finish();
+            return;
+         }
+
+         node.parent.totalBytes.addAndGet(totalBytes);
+         node.parent.totalFiles.addAndGet(totalFiles);
+         node = node.parent;
+      }
+   }
+
+   @NonNull
+   private static Map<String, DirectoryStats> loadSnapshot(@NonNull File snapshot, @NonNull String root) {
+      if (!snapshot.isFile())
+         return Collections.emptyMap();
+
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshot)))) {
+         if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION || !root.equals(in.readUTF()))
+            return Collections.emptyMap();
+
+         int count = in.readInt();
+         Map<String, DirectoryStats> stats = new HashMap<>(count * 2);
+         for (int i = 0; i < count; i++) {
+            String path = in.readUTF();
+            long lastModified = in.readLong();
+            long ownBytes = in.readLong();
+            int ownFiles = in.readInt();
+            int subdirectoryCount = in.readInt();
+            List<String> subdirectories = new ArrayList<>(subdirectoryCount);
+            for (int j = 0; j < subdirectoryCount; j++)
+               subdirectories.add(in.readUTF());
+            stats.put(path, new DirectoryStats(path, lastModified, ownBytes, ownFiles, 0, 0, subdirectories));
+         }
+         return stats;
+      } catch (IOException e) {
+         Timber.w(e, "Could not read the scan snapshot");
+         return Collections.emptyMap();
+      }
+   }
+
+   /**
+    * Writes the snapshot to a temporary file then renames it over the previous one
+    */
+   private static void saveSnapshot(@NonNull File snapshot, @NonNull String root,
+                                    @NonNull Map<String, DirectoryStats> directories) {
+      File next = new File(snapshot.getPath() + ".tmp");
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(next)))) {
+         out.writeInt(SNAPSHOT_MAGIC);
+         out.writeInt(SNAPSHOT_VERSION);
+         out.writeUTF(root);
+         out.writeInt(directories.size());
+         for (DirectoryStats stats : directories.values()) {
+            out.writeUTF(stats.path);
+            out.writeLong(stats.lastModified);
+            out.writeLong(stats.ownBytes);
+            out.writeInt(stats.ownFiles);
+            out.writeInt(stats.subdirectories.size());
+            for (String name : stats.subdirectories)
+               out.writeUTF(name);
+         }
+      } catch (IOException e) {
+         Timber.w(e, "Could not write the scan snapshot");
+         return;
+      }
+      if (!next.renameTo(snapshot))
+         Timber.w("Could not replace the scan snapshot");
+   }
+}
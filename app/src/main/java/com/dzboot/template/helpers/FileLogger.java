@@ -0,0 +1,383 @@
+package com.dzboot.template.helpers;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import timber.log.Timber;
+
+
+/**
+ * Asynchronous file logger. Callers only put the message in a lock-free ring buffer, a single background
+ * thread formats and writes batches through one long-lived channel, rotating the file by size or age.
+ * Messages are flushed at most flushInterval after being logged, or when {@link #flush()} or
+ * {@link #close()} is called. When the ring is full new messages are dropped and counted, logging never
+ * blocks the caller.
+ */
+@SuppressWarnings("unused")
+public class FileLogger {
+
+   private final File directory;
+   private final String baseName;
+   private final String extension;
+   private final long maxFileBytes;
+   private final long maxFileAgeMs;
+   private final int maxFiles;
+   private final long flushIntervalNanos;
+
+   //bounded multi producer single consumer ring, see Vyukov's bounded queue
+   private final int mask;
+   private final String[] messages;
+   private final long[] times;
+   private final AtomicLongArray sequences;
+   private final AtomicLong tail = new AtomicLong();
+   private volatile long head;
+   private final int wakeUpThreshold;
+
+   private final AtomicLong dropped = new AtomicLong();
+   private final AtomicLong flushRequests = new AtomicLong();
+   private volatile long flushedRequests;
+   private volatile boolean closed;
+   private final Thread writer;
+
+   //only touched by the writer thread
+   private final ByteBuffer batch = ByteBuffer.allocateDirect(64 * 1024);
+   private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss z", Locale.US);
+   private final StringBuilder line = new StringBuilder(256);
+   private long cachedSecond = Long.MIN_VALUE;
+   private String cachedTimestamp;
+   private FileChannel channel;
+   private long fileSize;
+   private long fileCreated;
+
+
+   private FileLogger(@NonNull Builder builder) {
+      directory = builder.directory;
+      int dot = builder.fileName.lastIndexOf('.');
+      baseName = dot > 0 ? builder.fileName.substring(0, dot) : builder.fileName;
+      extension = dot > 0 ? builder.fileName.substring(dot) : "";
+      maxFileBytes = builder.maxFileBytes;
+      maxFileAgeMs = builder.maxFileAgeMs;
+      maxFiles = builder.maxFiles;
+      flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(builder.flushIntervalMs);
+
+      int capacity = Integer.highestOneBit(Math.max(builder.capacity, 2) - 1) << 1;
+      mask = capacity - 1;
+      messages = new String[capacity];
+      times = new long[capacity];
+      sequences = new AtomicLongArray(capacity);
+      for (int i = 0; i < capacity; i++)
+         sequences.set(i, i);
+      wakeUpThreshold = capacity / 2;
+
+      dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+      writer = new Thread(this::writeLoop, "FileLogger");
+      writer.setDaemon(true);
+      writer.setPriority(Thread.MIN_PRIORITY);
+      writer.start();
+   }
+
+   /**
+    * Queues a message, safe to call from any thread including the main thread
+    *
+    * @param msg the message
+    * @return false if the ring was full or the logger closed and the message was dropped
+    */
+   public boolean log(String msg) {
+      if (closed) {
+         dropped.incrementAndGet();
+         return false;
+      }
+
+      long time = System.currentTimeMillis();
+      long position = tail.get();
+      while (true) {
+         int index = (int) position & mask;
+         long difference = sequences.get(index) - position;
+         if (difference == 0) {
+            if (tail.compareAndSet(position, position + 1))
+               break;
+            position = tail.get();
+         } else if (difference < 0) {
+            dropped.incrementAndGet();
+            return false;
+         } else {
+            position = tail.get();
+         }
+      }
+
+      int index = (int) position & mask;
+      messages[index] = String.valueOf(msg);
+      times[index] = time;
+      sequences.lazySet(index, position + 1);
+
+      if (position - head >= wakeUpThreshold)
+         LockSupport.unpark(writer);
+      return true;
+   }
+
+   /**
+    * @return number of messages dropped because the ring was full
+    */
+   public long getDroppedCount() {
+      return dropped.get();
+   }
+
+   /**
+    * Blocks until every message logged before this call is written to the file
+    *
+    * @param timeoutMs maximum time to wait
+    * @return true if everything was written in time
+    */
+   public boolean flush(long timeoutMs) {
+      long request = flushRequests.incrementAndGet();
+      LockSupport.unpark(writer);
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+      while (flushedRequests < request && writer.isAlive()) {
+         long remaining = deadline - System.nanoTime();
+         if (remaining <= 0)
+            return false;
+         LockSupport.parkNanos(this, Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(5)));
+      }
+      return true;
+   }
+
+   /**
+    * Blocks until every message logged before this call is written to the file, at most a second
+    */
+   public void flush() {
+      flush(1000);
+   }
+
+   /**
+    * Writes what is queued and stops the writer, later messages are dropped
+    *
+    * @param timeoutMs maximum time to wait for the writer
+    */
+   public void close(long timeoutMs) {
+      closed = true;
+      LockSupport.unpark(writer);
+      try {
+         writer.join(timeoutMs);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   public void close() {
+      close(1000);
+   }
+
+   private void writeLoop() {
+      while (true) {
+         boolean stopping = closed;
+         long request = flushRequests.get();
+         try {
+            drain();
+         } catch (IOException | RuntimeException e) {
+            //the messages of the failed batch are lost, the next batch opens the file again
+            Timber.w(e, "Could not write logs to %s", directory);
+            closeChannel();
+         }
+         flushedRequests = request;
+
+         if (stopping) {
+            closeChannel();
+            return;
+         }
+         if (flushRequests.get() == request && head == tail.get())
+            LockSupport.parkNanos(this, flushIntervalNanos);
+      }
+   }
+
+   /**
+    * Writes every queued message in as few channel writes as the batch buffer allows
+    */
+   private void drain() throws IOException {
+      while (true) {
+         int index = (int) head & mask;
+         if (sequences.get(index) != head + 1)
+            break;
+
+         String message = messages[index];
+         long time = times[index];
+         messages[index] = null;
+         sequences.lazySet(index, head + mask + 1);
+         head++;
+
+         appendLine(time, message);
+      }
+      writeBatch();
+   }
+
+   private void appendLine(long time, @NonNull String message) throws IOException {
+      long second = time / 1000;
+      if (second != cachedSecond) {
+         cachedSecond = second;
+         cachedTimestamp = dateFormat.format(new Date(time));
+      }
+
+      line.setLength(0);
+      line.append('[').append(cachedTimestamp).append("] ").append(message).append('\n');
+      if (batch.remaining() < Utf8Encoder.INSTANCE.encodedLength(line))
+         writeBatch();
+
+      if (batch.remaining() >= Utf8Encoder.INSTANCE.encodedLength(line)) {
+         Utf8Encoder.INSTANCE.encode(line, batch);
+      } else {
+         //longer than the whole batch buffer, stream it through
+         Utf8Encoder.Incremental encoder = new Utf8Encoder.Incremental(line);
+         while (!encoder.isDone()) {
+            encoder.encodeNext(batch);
+            writeBatch();
+         }
+      }
+   }
+
+   private void writeBatch() throws IOException {
+      if (batch.position() == 0)
+         return;
+
+      try {
+         FileChannel target = channelFor(batch.position());
+         batch.flip();
+         while (batch.hasRemaining())
+            fileSize += target.write(batch);
+      } finally {
+         //a failed batch is dropped, a flipped buffer would break the next encode
+         batch.clear();
+      }
+   }
+
+   /**
+    * Returns the channel of the current log file, rotating it first if the write would exceed its limits
+    */
+   @NonNull
+   private FileChannel channelFor(int bytes) throws IOException {
+      long now = System.currentTimeMillis();
+      if (channel != null && fileSize > 0 && (fileSize + bytes > maxFileBytes
+                                              || (maxFileAgeMs > 0 && now - fileCreated > maxFileAgeMs))) {
+         closeChannel();
+         rotate();
+      }
+
+      if (channel == null) {
+         if (!directory.exists() && !directory.mkdirs())
+            throw new IOException("Can not create parent folder");
+
+         File file = new File(directory, baseName + extension);
+         fileCreated = file.exists() ? file.lastModified() : now;
+         channel = new FileOutputStream(file, true).getChannel();
+         fileSize = channel.size();
+      }
+      return channel;
+   }
+
+   /**
+    * Shifts log.txt to log.1.txt, log.1.txt to log.2.txt and so on, deleting the oldest one
+    */
+   private void rotate() {
+      new File(directory, baseName + "." + (maxFiles - 1) + extension).delete();
+      for (int i = maxFiles - 2; i >= 0; i--) {
+         File from = new File(directory, i == 0 ? baseName + extension : baseName + "." + i + extension);
+         if (from.exists())
+            from.renameTo(new File(directory, baseName + "." + (i + 1) + extension));
+      }
+   }
+
+   private void closeChannel() {
+      if (channel != null) {
+         try {
+            channel.close();
+         } catch (IOException ignored) {}
+         channel = null;
+      }
+   }
+
+
+   public static class Builder {
+
+      private final File directory;
+      private String fileName = "log.txt";
+      private long maxFileBytes = 1024 * 1024;
+      private long maxFileAgeMs = TimeUnit.DAYS.toMillis(1);
+      private int maxFiles = 3;
+      private long flushIntervalMs = 1000;
+      private int capacity = 1024;
+
+      /**
+       * @param directory the folder of the log files, created if needed
+       */
+      public Builder(@NonNull File directory) {
+         this.directory = directory;
+      }
+
+      @NonNull
+      public Builder fileName(@NonNull String fileName) {
+         this.fileName = fileName;
+         return this;
+      }
+
+      /**
+       * @param maxFileBytes the file is rotated before it grows past this size
+       */
+      @NonNull
+      public Builder maxFileBytes(long maxFileBytes) {
+         this.maxFileBytes = maxFileBytes;
+         return this;
+      }
+
+      /**
+       * @param maxFileAgeMs the file is rotated once it is older than this, 0 to only rotate by size
+       */
+      @NonNull
+      public Builder maxFileAge(long maxFileAgeMs) {
+         this.maxFileAgeMs = maxFileAgeMs;
+         return this;
+      }
+
+      /**
+       * @param maxFiles number of files kept, the current one included
+       */
+      @NonNull
+      public Builder maxFiles(int maxFiles) {
+         this.maxFiles = Math.max(1, maxFiles);
+         return this;
+      }
+
+      /**
+       * @param flushIntervalMs maximum time a message waits in memory before being written
+       */
+      @NonNull
+      public Builder flushInterval(long flushIntervalMs) {
+         this.flushIntervalMs = flushIntervalMs;
+         return this;
+      }
+
+      /**
+       * @param capacity number of messages the ring holds before dropping new ones, rounded up to a power of two
+       */
+      @NonNull
+      public Builder capacity(int capacity) {
+         this.capacity = capacity;
+         return this;
+      }
+
+      @NonNull
+      public FileLogger build() {
+         return new FileLogger(this);
+      }
+   }
+}
@@ -17,23 +17,26 @@ import androidx.loader.content.CursorLoader;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
-import java.util.TimeZone;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.List;
+
+import timber.log.Timber;
 
 
 @SuppressWarnings("unused")
 public class FileUtils {
 
+   private static volatile FileLogger logger;
+
    /**
-    * Load UTF8withBOM or any ansi text file.
+    * Load UTF8withBOM, UTF16withBOM or UTF8 text file.
     *
     * @param filename the file name
     * @return String representation of the file
@@ -41,22 +44,24 @@ public class FileUtils {
     */
    @NonNull
    public static String loadFileAsString(String filename) throws java.io.IOException {
-      final int BUFLEN = 1024;
-      try (BufferedInputStream is = new BufferedInputStream(new FileInputStream(filename), BUFLEN)) {
-         ByteArrayOutputStream baos = new ByteArrayOutputStream(BUFLEN);
-         byte[] bytes = new byte[BUFLEN];
-         boolean isUTF8 = false;
-         int read, count = 0;
-         while ((read = is.read(bytes)) != -1) {
-            if (count == 0 && bytes[0] == (byte) 0xEF && bytes[1] == (byte) 0xBB && bytes[2] == (byte) 0xBF) {
-               isUTF8 = true;
-               baos.write(bytes, 3, read - 3); // drop UTF8 bom marker
-            } else {
-               baos.write(bytes, 0, read);
-            }
-            count += read;
-         }
-         return isUTF8 ? new String(baos.toByteArray(), "UTF-8") : new String(baos.toByteArray());
+      return TextFileLoader.loadString(new File(filename));
+   }
+
+   /**
+    * Copies a UTF-8 text file converting the digits of every script to ASCII digits on the way,
+    * in constant memory whatever the file size
+    *
+    * @param source      the file to read
+    * @param destination the file to write
+    * @throws IOException Exception when something goes wrong
+    */
+   public static void normalizeNumerals(String source, String destination) throws IOException {
+      try (Reader in = NumeralFilterReader.toLatin(new InputStreamReader(new FileInputStream(source), "UTF-8"));
+           Writer out = new OutputStreamWriter(new FileOutputStream(destination), "UTF-8")) {
+         char[] buffer = new char[8192];
+         int read;
+         while ((read = in.read(buffer)) != -1)
+            out.write(buffer, 0, read);
       }
    }
 
@@ -74,6 +79,22 @@ public class FileUtils {
       else return "";
    }
 
+   /**
+    * Tells whether the file is a symbolic link, java.nio.file can't tell before Android O
+    *
+    * @param file the file
+    * @return true if its last path component is a link, or if it can't be resolved
+    */
+   public static boolean isSymlink(@NonNull File file) {
+      try {
+         File parent = file.getParentFile();
+         File resolved = parent == null ? file.getAbsoluteFile() : new File(parent.getCanonicalFile(), file.getName());
+         return !resolved.getCanonicalPath().equals(resolved.getPath());
+      } catch (IOException e) {
+         return true;
+      }
+   }
+
    /**
     * Get the file's name with extension
     *
@@ -106,7 +127,32 @@ public class FileUtils {
       return displayName;
    }
 
+   /**
+    * Resolves the file path of a Uri, results are cached by {@link UriPathResolver}
+    * @param context non-null context
+    * @param fileUri the Uri to resolve
+    * @return the path, or null if it has none
+    */
+   @Nullable
    public static String getRealPath(Context context, Uri fileUri) {
+      return UriPathResolver.get(context).resolve(fileUri);
+   }
+
+   /**
+    * Resolves the file paths of many Uris, batching the MediaStore queries
+    * @param context non-null context
+    * @param fileUris the Uris to resolve
+    * @return the paths in the same order, null for Uris which have none
+    */
+   @NonNull
+   public static String[] getRealPaths(@NonNull Context context, @NonNull List<Uri> fileUris) {
+      return UriPathResolver.get(context).resolveAll(fileUris);
+   }
+
+   /**
+    * Queries the path of a single Uri, bypassing the cache
+    */
+   static String queryRealPath(Context context, Uri fileUri) {
       String realPath;
       // SDK < API11
       if (Build.VERSION.SDK_INT < 11) {
@@ -309,63 +355,83 @@ public class FileUtils {
 
 
    /**
-    * Creates log file and puts data in it. This needs WRITE_STORAGE_PERMISSION
-    * TODO folder name must be configurable once
+    * Sets the logger used by {@link #log(String)}, to log somewhere else than the app's "logs" folder
     *
-    * @param msg the message to insert
+    * @param logger the logger, the previous one is closed
     */
-
-   public static void log(String msg) {
-
-      try {
-         File parent = new File(Environment.getExternalStoragePublicDirectory("VPN").getPath());
-         if (!parent.exists() && !parent.mkdirs())
-            throw new IOException("Can not create parent folder");
-
-         File log = new File(parent, "log.txt");
-         if (!log.exists() && !log.createNewFile())
-            throw new IOException("Can not create log file");
-
-         FileOutputStream out = new FileOutputStream(log, true);
-         SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss z", Locale.US);
-         df.setTimeZone(TimeZone.getTimeZone("UTC"));
-         out.write(("[" + df.format(new Date()) + "] " + msg + "\n").getBytes());
-         out.close();
-      } catch (IOException e) {
-         e.printStackTrace();
+   public static void setLogger(@NonNull FileLogger logger) {
+      FileLogger previous;
+      synchronized (FileUtils.class) {
+         previous = FileUtils.logger;
+         FileUtils.logger = logger;
       }
+      if (previous != null)
+         previous.close();
    }
 
    /**
-    * Deletes app's cache
+    * Creates the default logger if none was set, it writes to the "logs" folder of the app's private files
+    * which needs no permission
+    *
     * @param context non-null context
+    * @return the current logger
     */
-   //TODO needs testing
-   public static void deleteCache(@NonNull Context context) {
-      new Thread(() -> {
-         try {
-            File dir = context.getCacheDir();
-            deleteDir(dir);
-         } catch (Exception ignored) {}
-      }).start();
+   @NonNull
+   public static FileLogger initLogger(@NonNull Context context) {
+      FileLogger current = logger;
+      if (current == null) {
+         synchronized (FileUtils.class) {
+            if (logger == null)
+               logger = new FileLogger.Builder(new File(context.getFilesDir(), "logs")).build();
+            current = logger;
+         }
+      }
+      return current;
    }
 
-   private static boolean deleteDir(File dir) {
-      if (dir == null)
-         return false;
+   /**
+    * Appends a line to the log file without blocking the caller, the write happens on a background thread
+    *
+    * @param context non-null context, used to create the default logger on the first call
+    * @param msg     the message to insert
+    */
+   public static void log(@NonNull Context context, String msg) {
+      initLogger(context).log(msg);
+   }
 
-      if (dir.isDirectory()) {
-         String[] children = dir.list();
-         if (children == null)
-            return  false;
+   /**
+    * Appends a line to the log file without blocking the caller, the write happens on a background thread.
+    * The default logger is created by {@link com.dzboot.template.base.BaseApp}, messages logged before that go to
+    * Timber instead
+    *
+    * @param msg the message to insert
+    */
+   public static void log(String msg) {
+      FileLogger current = logger;
+      if (current != null)
+         current.log(msg);
+      else
+         Timber.w("No file logger yet, call initLogger first: %s", msg);
+   }
 
-         for (String child : children) {
-            if (!deleteDir(new File(dir, child)))
-               return false;
-         }
-         return dir.delete();
-      }
+   /**
+    * Deletes app's cache in the background
+    * @param context non-null context
+    */
+   public static void deleteCache(@NonNull Context context) {
+      CacheCleaner.clean(context.getCacheDir(), null, null);
+   }
 
-      return dir.isFile() && dir.delete();
+   /**
+    * Deletes the files of app's cache accepted by the filter in the background
+    * @param context non-null context
+    * @param filter which files to delete, null for all of them
+    * @param listener receives progress and the result on the main thread
+    * @return the running task, to observe or cancel it
+    */
+   @NonNull
+   public static CacheCleaner.Task deleteCache(@NonNull Context context, @Nullable CacheCleaner.Filter filter,
+                                               @Nullable CacheCleaner.Listener listener) {
+      return CacheCleaner.clean(context.getCacheDir(), filter, listener);
    }
 }
@@ -0,0 +1,220 @@
+package com.dzboot.template.helpers
+
+import java.io.IOException
+import java.io.OutputStream
+import java.io.Writer
+import java.nio.ByteBuffer
+
+
+/**
+ * Table driven hex encoder and decoder. Encoding to a String only allocates the String itself
+ * for inputs up to [SCRATCH_BYTES] bytes, the [Appendable] and stream variants do not allocate.
+ */
+@Suppress("unused", "MemberVisibilityCanBePrivate")
+object HexCodec {
+
+   private const val SCRATCH_BYTES = 512
+
+   //both chars of every byte value, upper and lower case
+   private val UPPER = buildTable("0123456789ABCDEF")
+   private val LOWER = buildTable("0123456789abcdef")
+
+   //nibble value of every ASCII char, -1 if it is not a hex digit
+   private val NIBBLES = ByteArray(128) { (-1).toByte() }.also {
+      for (i in 0..9) it['0'.code + i] = i.toByte()
+      for (i in 0..5) {
+         it['a'.code + i] = (10 + i).toByte()
+         it['A'.code + i] = (10 + i).toByte()
+      }
+   }
+
+   private val scratch = object : ThreadLocal<CharArray>() {
+      override fun initialValue() = CharArray(SCRATCH_BYTES * 2)
+   }
+
+   private fun buildTable(digits: String) = CharArray(512).also {
+      for (b in 0..255) {
+         it[b * 2] = digits[b ushr 4]
+         it[b * 2 + 1] = digits[b and 0x0F]
+      }
+   }
+
+   /**
+    * Encodes a byte range to a hex string
+    *
+    * @param bytes     the bytes
+    * @param offset    index of the first byte
+    * @param length    number of bytes
+    * @param upperCase whether to use A-F or a-f
+    * @return the hex string
+    */
+   @JvmOverloads
+   fun encode(bytes: ByteArray, offset: Int = 0, length: Int = bytes.size - offset, upperCase: Boolean = true): String {
+      checkRange(bytes.size, offset, length)
+      val chars = if (length <= SCRATCH_BYTES) scratch.get()!! else CharArray(length * 2)
+      encodeInto(bytes, offset, length, chars, 0, upperCase)
+      return String(chars, 0, length * 2)
+   }
+
+   /**
+    * Encodes the remaining bytes of the buffer, its position is left unchanged
+    *
+    * @param buffer    the bytes
+    * @param upperCase whether to use A-F or a-f
+    * @return the hex string
+    */
+   @JvmOverloads
+   fun encode(buffer: ByteBuffer, upperCase: Boolean = true): String {
+      if (buffer.hasArray())
+         return encode(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), upperCase)
+
+      val length = buffer.remaining()
+      val table = if (upperCase) UPPER else LOWER
+      val chars = if (length <= SCRATCH_BYTES) scratch.get()!! else CharArray(length * 2)
+      var j = 0
+      for (i in buffer.position() until buffer.limit()) {
+         val b = buffer.get(i).toInt() and 0xFF
+         chars[j++] = table[b * 2]
+         chars[j++] = table[b * 2 + 1]
+      }
+      return String(chars, 0, length * 2)
+   }
+
+   /**
+    * Encodes a byte range into a char array
+    *
+    * @return the number of chars written, always length * 2
+    */
+   @JvmOverloads
+   fun encodeInto(bytes: ByteArray, offset: Int, length: Int, out: CharArray, outOffset: Int, upperCase: Boolean = true): Int {
+      checkRange(bytes.size, offset, length)
+      checkRange(out.size, outOffset, length * 2)
+      val table = if (upperCase) UPPER else LOWER
+      var j = outOffset
+      for (i in offset until offset + length) {
+         val b = bytes[i].toInt() and 0xFF
+         out[j++] = table[b * 2]
+         out[j++] = table[b * 2 + 1]
+      }
+      return length * 2
+   }
+
+   /**
+    * Appends the hex encoding of a byte range
+    *
+    * @param out where to append the hex chars
+    * @return out, for chaining
+    */
+   @JvmOverloads
+   fun <A : Appendable> encodeTo(bytes: ByteArray, offset: Int, length: Int, out: A, upperCase: Boolean = true): A {
+      checkRange(bytes.size, offset, length)
+      val table = if (upperCase) UPPER else LOWER
+      for (i in offset until offset + length) {
+         val b = bytes[i].toInt() and 0xFF
+         out.append(table[b * 2]).append(table[b * 2 + 1])
+      }
+      return out
+   }
+
+   /**
+    * Decodes a hex string, both cases are accepted
+    *
+    * @param hex the hex chars, an even number of them
+    * @return the decoded bytes
+    * @throws IllegalArgumentException if the length is odd or a char is not a hex digit
+    */
+   fun decode(hex: CharSequence): ByteArray {
+      require(hex.length % 2 == 0) { "Hex string has an odd length: ${hex.length}" }
+      val bytes = ByteArray(hex.length / 2)
+      for (i in bytes.indices)
+         bytes[i] = decodeByte(hex, i * 2)
+      return bytes
+   }
+
+   /**
+    * Decodes a hex string into a buffer, starting at its position
+    *
+    * @param hex the hex chars, an even number of them
+    * @param out where to put the bytes, its position moves past the written bytes
+    * @throws IllegalArgumentException if the length is odd or a char is not a hex digit
+    * @throws java.nio.BufferOverflowException if the buffer is too small
+    */
+   fun decodeInto(hex: CharSequence, out: ByteBuffer) {
+      require(hex.length % 2 == 0) { "Hex string has an odd length: ${hex.length}" }
+      for (i in 0 until hex.length step 2)
+         out.put(decodeByte(hex, i))
+   }
+
+   private fun decodeByte(hex: CharSequence, index: Int): Byte =
+      ((nibble(hex, index) shl 4) or nibble(hex, index + 1)).toByte()
+
+   private fun nibble(hex: CharSequence, index: Int): Int {
+      val ch = hex[index]
+      val value = if (ch.code < 128) NIBBLES[ch.code].toInt() else -1
+      require(value >= 0) { "Not a hex digit at $index: $ch" }
+      return value
+   }
+
+   private fun checkRange(size: Int, offset: Int, length: Int) {
+      if (offset < 0 || length < 0 || offset > size - length)
+         throw IndexOutOfBoundsException("offset $offset, length $length, size $size")
+   }
+
+
+   /**
+    * Output stream writing the hex encoding of every byte to a [Writer] through a small fixed buffer,
+    * to hex encode large payloads without holding them in memory. Closing it closes the writer
+    */
+   class EncodingOutputStream @JvmOverloads constructor(
+      private val out: Writer,
+      upperCase: Boolean = true
+   ) : OutputStream() {
+
+      private val table = if (upperCase) HexCodec.UPPER else HexCodec.LOWER
+      private val buffer = CharArray(4096)
+      private var count = 0
+
+      @Throws(IOException::class)
+      override fun write(b: Int) {
+         if (count == buffer.size)
+            flushBuffer()
+         val value = b and 0xFF
+         buffer[count++] = table[value * 2]
+         buffer[count++] = table[value * 2 + 1]
+      }
+
+      @Throws(IOException::class)
+      override fun write(b: ByteArray, off: Int, len: Int) {
+         HexCodec.checkRange(b.size, off, len)
+         var offset = off
+         var remaining = len
+         while (remaining > 0) {
+            if (count == buffer.size)
+               flushBuffer()
+            val chunk = minOf(remaining, (buffer.size - count) / 2)
+            count += HexCodec.encodeInto(b, offset, chunk, buffer, count, table === HexCodec.UPPER)
+            offset += chunk
+            remaining -= chunk
+         }
+      }
+
+      @Throws(IOException::class)
+      override fun flush() {
+         flushBuffer()
+         out.flush()
+      }
+
+      @Throws(IOException::class)
+      override fun close() {
+         flushBuffer()
+         out.close()
+      }
+
+      private fun flushBuffer() {
+         if (count > 0) {
+            out.write(buffer, 0, count)
+            count = 0
+         }
+      }
+   }
+}
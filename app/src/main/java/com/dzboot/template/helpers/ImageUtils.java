@@ -2,7 +2,8 @@ package com.dzboot.template.helpers;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Rect;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
@@ -10,10 +11,15 @@ import android.view.ViewTreeObserver;
 import android.widget.TextView;
 
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import androidx.annotation.DrawableRes;
+import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 
 import static com.dzboot.template.helpers.DisplayUtils.dpToPx;
@@ -22,25 +28,104 @@ import static com.dzboot.template.helpers.DisplayUtils.dpToPx;
 @SuppressWarnings("unused")
 public class ImageUtils {
 
+   //Bitmaps held by caches, possibly still drawn after leaving them
+   private static final Set<Bitmap> shared = Collections.synchronizedSet(
+         Collections.newSetFromMap(new WeakHashMap<>()));
+
+
    /**
-    * Resize a drawable
+    * Resize a drawable, repeated sizes are served by {@link ResizedDrawableCache}. A size missing from memory is
+    * resized on the calling thread, {@link #resizeDrawableAsync} keeps the main thread free
     *
     * @param context  the context
     * @param drawable the drawable to resize
     * @param sizeDp   the new size in dp
-    * @return new resized drawable
+    * @return new resized drawable, its bitmap is shared with the cache
     */
    @NonNull
    public static Drawable resizeDrawable(@NonNull Context context, @DrawableRes int drawable, int sizeDp) {
       int size = dpToPx(context, sizeDp);
-      Bitmap b = ((BitmapDrawable) context.getResources().getDrawable(drawable)).getBitmap();
-      Bitmap bitmapResized = Bitmap.createScaledBitmap(b, size, size, false);
-      return new BitmapDrawable(context.getResources(), bitmapResized);
+      return new BitmapDrawable(context.getResources(), ResizedDrawableCache.get(context).get(drawable, size));
+   }
+
+   /**
+    * Resize a drawable off the main thread unless it is already in memory
+    *
+    * @param context  the context
+    * @param drawable the drawable to resize
+    * @param sizeDp   the new size in dp
+    * @param callback receives the resized drawable on the main thread
+    */
+   @MainThread
+   public static void resizeDrawableAsync(@NonNull Context context, @DrawableRes int drawable, int sizeDp,
+                                          @NonNull DrawableCallback callback) {
+      int size = dpToPx(context, sizeDp);
+      ResizedDrawableCache.get(context)
+                          .getAsync(drawable, size,
+                                    bitmap -> callback.onDrawable(new BitmapDrawable(context.getResources(), bitmap)));
+   }
+
+   public interface DrawableCallback {
+
+      void onDrawable(@NonNull Drawable drawable);
+   }
+
+   /**
+    * Scales a bitmap into one borrowed from {@link BitmapPool}, like Bitmap.createScaledBitmap without filtering
+    *
+    * @param source the bitmap to scale, left untouched
+    * @param width  the new width in px
+    * @param height the new height in px
+    * @return the scaled bitmap, give it back with {@link #releaseBitmap(Bitmap)} when it is no longer drawn
+    */
+   @NonNull
+   public static Bitmap scaleBitmap(@NonNull Bitmap source, int width, int height) {
+      Bitmap.Config config = source.getConfig();
+      if (config == null || BitmapDecoder.isHardware(config))
+         config = Bitmap.Config.ARGB_8888;
+      Bitmap scaled = BitmapPool.get().get(width, height, config);
+      new Canvas(scaled).drawBitmap(source, null, new Rect(0, 0, width, height), null);
+      return scaled;
+   }
+
+   /**
+    * Gives a bitmap that is no longer drawn back to {@link BitmapPool}, to be reused by the next decode or resize
+    *
+    * @param bitmap the bitmap, must not be used afterwards
+    */
+   public static void releaseBitmap(@NonNull Bitmap bitmap) {
+      //cached bitmaps may still be drawn by other drawables
+      if (!isShared(bitmap))
+         BitmapPool.get().put(bitmap);
+   }
+
+   /**
+    * Keeps {@link #releaseBitmap} from pooling a Bitmap, for caches handing the same Bitmap to several users
+    */
+   public static void markShared(@NonNull Bitmap bitmap) {
+      shared.add(bitmap);
+   }
+
+   /**
+    * @return whether the Bitmap is held by a cache, such as {@link ResizedDrawableCache}, and may be drawn elsewhere
+    */
+   public static boolean isShared(@NonNull Bitmap bitmap) {
+      return shared.contains(bitmap);
+   }
+
+   /**
+    * Gives the bitmap of a drawable back to {@link BitmapPool}, bitmaps shared by caches are kept
+    *
+    * @param drawable the drawable, must not be used afterwards
+    */
+   public static void releaseDrawable(@NonNull Drawable drawable) {
+      if (drawable instanceof BitmapDrawable && ((BitmapDrawable) drawable).getBitmap() != null)
+         releaseBitmap(((BitmapDrawable) drawable).getBitmap());
    }
 
    /**
     * This function will decode the file stream from path with appropriate size you need.
-    * //Specify the max size in the class
+    * The file is opened once, see {@link BitmapDecoder}
     *
     * @param f         the file
     * @param maxHeight height in px
@@ -49,30 +134,24 @@ public class ImageUtils {
     * @throws Exception Something went wrong
     */
    public static Bitmap decodeFile(File f, int maxHeight, int maxWidth) throws Exception {
-      //Decode image size
-      BitmapFactory.Options o = new BitmapFactory.Options();
-      o.inJustDecodeBounds = true;
-
-      FileInputStream fis = new FileInputStream(f);
-      BitmapFactory.decodeStream(fis, null, o);
-      fis.close();
-
-      int scale = 1;
-      int maxSize = Math.max(maxHeight, maxWidth);
-      if (o.outHeight > maxHeight || o.outWidth > maxWidth) {
-         scale = (int) Math.pow(2, (int) Math.ceil(Math.log(maxSize /
-               (double) Math.max(o.outHeight, o.outWidth)) / Math.log(0.5)));
-      }
-
-      //Decode with inSampleSize
-      BitmapFactory.Options o2 = new BitmapFactory.Options();
-      o2.inSampleSize = scale;
-      fis = new FileInputStream(f);
-
-      Bitmap b = BitmapFactory.decodeStream(fis, null, o2);
-      fis.close();
-
-      return b;
+      return BitmapDecoder.decode(f, maxWidth, maxHeight, null, null);
+   }
+
+   /**
+    * Decodes the file with appropriate size, reusing the memory of a Bitmap that is no longer displayed
+    *
+    * @param f         the file
+    * @param maxHeight height in px
+    * @param maxWidth  width in px
+    * @param config    pixel config, such as RGB_565 for opaque thumbnails, null for the default
+    * @param reuse     a mutable Bitmap to decode into when it is large enough, null to allocate
+    * @return decoded file
+    * @throws IOException Something went wrong
+    */
+   @Nullable
+   public static Bitmap decodeFile(@NonNull File f, int maxHeight, int maxWidth, @Nullable Bitmap.Config config,
+                                   @Nullable Bitmap reuse) throws IOException {
+      return BitmapDecoder.decode(f, maxWidth, maxHeight, config, reuse);
    }
 
    /**
@@ -0,0 +1,277 @@
+package com.dzboot.template.helpers;
+
+import androidx.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+
+/**
+ * Random access to the lines of a large UTF-8 text file. The file is scanned once through memory mapped
+ * windows to build an index of line offsets, which is saved next to it in a .lineidx sidecar file.
+ * Later opens load the sidecar, and files that only grew since (logs) are indexed from where the last
+ * scan stopped. Reading lines then only touches the bytes of those lines, whatever the file size.
+ * <p>
+ * Not thread safe, confine an instance to one thread or synchronize on it.
+ */
+@SuppressWarnings("unused")
+public class IndexedTextFile implements Closeable {
+
+   private static final int SIDECAR_MAGIC = 0x4C494458; //LIDX
+   private static final int SIDECAR_VERSION = 1;
+   private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4;
+   private static final int FINGERPRINT_BYTES = 4096;
+   private static final long SCAN_WINDOW = 64L * 1024 * 1024;
+   private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+   private final File file;
+   private final File sidecar;
+   private final RandomAccessFile raf;
+   private final FileChannel channel;
+
+   //offset right after every '\n', the line i starts at lineEnds[i - 1], or after the BOM for i = 0
+   private long[] lineEnds = new long[1024];
+   private int lineEndCount;
+   private long firstLineStart;
+   private long indexedLength;
+   private long fingerprint;
+   private int persistedCount;
+
+
+   private IndexedTextFile(@NonNull File file, @NonNull File sidecar) throws IOException {
+      this.file = file;
+      this.sidecar = sidecar;
+      raf = new RandomAccessFile(file, "r");
+      channel = raf.getChannel();
+   }
+
+   /**
+    * Opens the file, loading its sidecar index or building it
+    *
+    * @param file the text file
+    * @return the indexed file, close it when done
+    * @throws IOException if the file cannot be read
+    */
+   @NonNull
+   public static IndexedTextFile open(@NonNull File file) throws IOException {
+      return open(file, new File(file.getPath() + ".lineidx"));
+   }
+
+   /**
+    * Opens the file with its index kept in the given sidecar file, for files in read only folders
+    *
+    * @param file    the text file
+    * @param sidecar where to keep the index
+    * @return the indexed file, close it when done
+    * @throws IOException if the file cannot be read
+    */
+   @NonNull
+   public static IndexedTextFile open(@NonNull File file, @NonNull File sidecar) throws IOException {
+      IndexedTextFile indexed = new IndexedTextFile(file, sidecar);
+      try {
+         indexed.loadSidecar();
+         indexed.refresh();
+      } catch (IOException e) {
+         indexed.close();
+         throw e;
+      }
+      return indexed;
+   }
+
+   @NonNull
+   public File getFile() {
+      return file;
+   }
+
+   /**
+    * Indexes the bytes appended since the last scan, or everything again if the file was rewritten
+    *
+    * @return true if the index changed
+    * @throws IOException if the file cannot be read
+    */
+   public boolean refresh() throws IOException {
+      long length = channel.size();
+      if (length == indexedLength && indexedLength > 0 && fingerprint == computeFingerprint())
+         return false;
+
+      if (length < indexedLength || fingerprint != computeFingerprint() || indexedLength == 0) {
+         lineEndCount = 0;
+         persistedCount = 0;
+         indexedLength = 0;
+         firstLineStart = hasUtf8Bom() ? 3 : 0;
+         fingerprint = computeFingerprint();
+      }
+
+      if (length == indexedLength)
+         return false;
+
+      scan(Math.max(indexedLength, firstLineStart), length);
+      indexedLength = length;
+      fingerprint = computeFingerprint();
+      saveSidecar();
+      return true;
+   }
+
+   /**
+    * @return the number of lines, a last line without a line break counts, an empty file has none
+    */
+   public int getLineCount() {
+      long lastStart = lineEndCount == 0 ? firstLineStart : lineEnds[lineEndCount - 1];
+      return lineEndCount + (indexedLength > lastStart ? 1 : 0);
+   }
+
+   /**
+    * Reads a range of lines, without their line breaks
+    *
+    * @param from  index of the first line
+    * @param count maximum number of lines, fewer are returned at the end of the file
+    * @return the lines
+    * @throws IOException if the file cannot be read
+    */
+   @NonNull
+   public List<String> getLines(int from, int count) throws IOException {
+      int lineCount = getLineCount();
+      if (from < 0 || count < 0)
+         throw new IndexOutOfBoundsException("from " + from + ", count " + count);
+      int to = (int) Math.min((long) from + count, lineCount);
+      if (from >= to)
+         return new ArrayList<>(0);
+
+      long start = lineStart(from);
+      long end = lineEnd(to - 1);
+      if (end - start > Integer.MAX_VALUE)
+         throw new IOException("Line range too large: " + (end - start) + " bytes");
+
+      ByteBuffer bytes = ByteBuffer.allocate((int) (end - start));
+      while (bytes.hasRemaining()) {
+         if (channel.read(bytes, start + bytes.position()) == -1)
+            throw new IOException("File shrank while reading it");
+      }
+
+      byte[] array = bytes.array();
+      List<String> lines = new ArrayList<>(to - from);
+      for (int line = from; line < to; line++) {
+         int lineOffset = (int) (lineStart(line) - start);
+         int lineLength = (int) (lineEnd(line) - start) - lineOffset;
+         //drop the line break, \n or \r\n
+         if (lineLength > 0 && array[lineOffset + lineLength - 1] == '\n')
+            lineLength--;
+         if (lineLength > 0 && array[lineOffset + lineLength - 1] == '\r')
+            lineLength--;
+         lines.add(new String(array, lineOffset, lineLength, UTF_8));
+      }
+      return lines;
+   }
+
+   @Override
+   public void close() throws IOException {
+      raf.close();
+   }
+
+   private long lineStart(int line) {
+      return line == 0 ? firstLineStart : lineEnds[line - 1];
+   }
+
+   private long lineEnd(int line) {
+      return line < lineEndCount ? lineEnds[line] : indexedLength;
+   }
+
+   private void scan(long from, long to) throws IOException {
+      for (long windowStart = from; windowStart < to; windowStart += SCAN_WINDOW) {
+         long windowSize = Math.min(SCAN_WINDOW, to - windowStart);
+         MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowSize);
+         for (int i = 0; i < windowSize; i++) {
+            if (window.get(i) == '\n')
+               addLineEnd(windowStart + i + 1);
+         }
+      }
+   }
+
+   private void addLineEnd(long offset) {
+      if (lineEndCount == lineEnds.length)
+         lineEnds = Arrays.copyOf(lineEnds, lineEnds.length + (lineEnds.length >> 1));
+      lineEnds[lineEndCount++] = offset;
+   }
+
+   private boolean hasUtf8Bom() throws IOException {
+      ByteBuffer bom = ByteBuffer.allocate(3);
+      while (bom.hasRemaining() && channel.read(bom, bom.position()) > 0) ;
+      return bom.position() == 3 && bom.get(0) == (byte) 0xEF && bom.get(1) == (byte) 0xBB
+             && bom.get(2) == (byte) 0xBF;
+   }
+
+   /**
+    * CRC of the first bytes already indexed, to detect a file rewritten rather than appended to
+    */
+   private long computeFingerprint() throws IOException {
+      int size = (int) Math.min(FINGERPRINT_BYTES, indexedLength > 0 ? indexedLength : channel.size());
+      ByteBuffer head = ByteBuffer.allocate(size);
+      while (head.hasRemaining() && channel.read(head, head.position()) > 0) ;
+      CRC32 crc = new CRC32();
+      crc.update(head.array(), 0, head.position());
+      return crc.getValue() ^ ((long) size << 32);
+   }
+
+   private void loadSidecar() {
+      if (!sidecar.isFile())
+         return;
+
+      try (RandomAccessFile in = new RandomAccessFile(sidecar, "r"); FileChannel sidecarChannel = in.getChannel()) {
+         ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+         while (header.hasRemaining() && sidecarChannel.read(header) > 0) ;
+         header.flip();
+         if (header.remaining() < HEADER_SIZE || header.getInt() != SIDECAR_MAGIC || header.getInt() != SIDECAR_VERSION)
+            return;
+
+         long length = header.getLong();
+         long savedFingerprint = header.getLong();
+         int count = header.getInt();
+         if (count < 0 || sidecarChannel.size() < HEADER_SIZE + 8L * count)
+            return;
+
+         long[] ends = new long[Math.max(count, 1024)];
+         sidecarChannel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, 8L * count).asLongBuffer().get(ends, 0, count);
+
+         lineEnds = ends;
+         lineEndCount = count;
+         persistedCount = count;
+         indexedLength = length;
+         fingerprint = savedFingerprint;
+         firstLineStart = hasUtf8Bom() ? 3 : 0;
+      } catch (IOException ignored) {
+         //a broken sidecar only costs a new scan
+      }
+   }
+
+   /**
+    * Writes the header and the line ends added since the last save, the previous ones are left untouched
+    */
+   private void saveSidecar() {
+      try (RandomAccessFile out = new RandomAccessFile(sidecar, "rw"); FileChannel sidecarChannel = out.getChannel()) {
+         ByteBuffer data = ByteBuffer.allocate(8 * (lineEndCount - persistedCount));
+         data.asLongBuffer().put(lineEnds, persistedCount, lineEndCount - persistedCount);
+         sidecarChannel.truncate(HEADER_SIZE + 8L * persistedCount);
+         while (data.hasRemaining())
+            sidecarChannel.write(data, HEADER_SIZE + 8L * persistedCount + data.position());
+
+         ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+         header.putInt(SIDECAR_MAGIC).putInt(SIDECAR_VERSION).putLong(indexedLength).putLong(fingerprint)
+               .putInt(lineEndCount).flip();
+         while (header.hasRemaining())
+            sidecarChannel.write(header, header.position());
+         persistedCount = lineEndCount;
+      } catch (IOException ignored) {
+         //the index still works from memory, it will be rebuilt on the next open
+      }
+   }
+}
@@ -0,0 +1,297 @@
+package com.dzboot.template.helpers;
+
+import androidx.annotation.NonNull;
+
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Formats numbers with the digits, separators and grouping of a locale straight into a caller owned
+ * {@link StringBuilder} or char[], without String.format, regex or temporary Strings.
+ * Instances are immutable and cached per locale, so they can be used from any thread.
+ */
+@SuppressWarnings("unused")
+public final class NativeNumberFormat {
+
+   private static final Map<Locale, NativeNumberFormat> cache = new ConcurrentHashMap<>();
+   private static final long[] POWERS_OF_TEN = {
+         1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L,
+         10000000000L, 100000000000L, 1000000000000L, 10000000000000L, 100000000000000L,
+         1000000000000000L, 10000000000000000L, 100000000000000000L, 1000000000000000000L
+   };
+   private static final String[] BYTE_UNITS = {"B", "KB", "MB", "GB", "TB", "PB", "EB"};
+
+   private final char zeroDigit;
+   private final char groupingSeparator;
+   private final char decimalSeparator;
+   private final char minusSign;
+   //digits in the group next to the decimal separator, then in every other group, 0 without grouping
+   private final int groupingSize;
+   private final int secondaryGroupingSize;
+   private final String nan;
+   private final String infinity;
+
+
+   private NativeNumberFormat(@NonNull Locale locale) {
+      DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+      zeroDigit = symbols.getZeroDigit();
+      groupingSeparator = symbols.getGroupingSeparator();
+      decimalSeparator = symbols.getDecimalSeparator();
+      minusSign = symbols.getMinusSign();
+      nan = symbols.getNaN();
+      infinity = symbols.getInfinity();
+
+      NumberFormat format = NumberFormat.getInstance(locale);
+      if (format instanceof DecimalFormat && format.isGroupingUsed()) {
+         groupingSize = ((DecimalFormat) format).getGroupingSize();
+         secondaryGroupingSize = secondaryGroupingSize(((DecimalFormat) format).toPattern(), groupingSize);
+      } else {
+         groupingSize = 0;
+         secondaryGroupingSize = 0;
+      }
+   }
+
+   /**
+    * Reads the secondary grouping of a pattern like #,##,##0.### used by Indian locales, DecimalFormat has no getter
+    *
+    * @return the size of the groups after the first one, the primary size if the pattern has a single separator
+    */
+   static int secondaryGroupingSize(@NonNull String pattern, int primary) {
+      int end = pattern.indexOf(';');
+      if (end < 0)
+         end = pattern.length();
+      int point = pattern.indexOf('.');
+      if (point >= 0 && point < end)
+         end = point;
+
+      int last = pattern.lastIndexOf(',', end - 1);
+      int previous = last > 0 ? pattern.lastIndexOf(',', last - 1) : -1;
+      if (previous < 0)
+         return primary;
+
+      int secondary = last - previous - 1;
+      return secondary > 0 ? secondary : primary;
+   }
+
+   /**
+    * @param locale the locale
+    * @return the cached formatter of the locale
+    */
+   @NonNull
+   public static NativeNumberFormat getInstance(@NonNull Locale locale) {
+      NativeNumberFormat format = cache.get(locale);
+      if (format == null) {
+         format = new NativeNumberFormat(locale);
+         cache.put(locale, format);
+      }
+      return format;
+   }
+
+   /**
+    * @return the zero digit of the locale, the other digits follow it
+    */
+   public char getZeroDigit() {
+      return zeroDigit;
+   }
+
+   /**
+    * Appends an integer
+    *
+    * @param value    the value
+    * @param grouping whether to add the locale's grouping separators
+    * @param out      where to append the formatted number
+    * @return out, for chaining
+    */
+   @NonNull
+   public StringBuilder format(long value, boolean grouping, @NonNull StringBuilder out) {
+      //work on the negative magnitude so Long.MIN_VALUE does not overflow
+      long negative = value > 0 ? -value : value;
+      if (value < 0)
+         out.append(minusSign);
+      appendInteger(negative, grouping, out);
+      return out;
+   }
+
+   /**
+    * Appends a decimal number rounded half up to a fixed number of fraction digits
+    *
+    * @param value          the value
+    * @param fractionDigits number of digits after the decimal separator, from 0 to 18
+    * @param grouping       whether to add the locale's grouping separators
+    * @param out            where to append the formatted number
+    * @return out, for chaining
+    */
+   @NonNull
+   public StringBuilder format(double value, int fractionDigits, boolean grouping, @NonNull StringBuilder out) {
+      if (fractionDigits < 0 || fractionDigits >= POWERS_OF_TEN.length)
+         throw new IllegalArgumentException("fractionDigits must be between 0 and 18: " + fractionDigits);
+
+      if (Double.isNaN(value))
+         return out.append(nan);
+
+      if (Double.isInfinite(value)) {
+         if (value < 0)
+            out.append(minusSign);
+         return out.append(infinity);
+      }
+
+      long scale = POWERS_OF_TEN[fractionDigits];
+      double scaled = Math.abs(value) * scale + 0.5;
+      if (scaled >= Long.MAX_VALUE) {
+         //too large to go through a long, rare enough to afford the allocations
+         NumberFormat format = NumberFormat.getInstance(Locale.ROOT);
+         //same rounding as the fast path, HALF_EVEN by default
+         format.setRoundingMode(RoundingMode.HALF_UP);
+         format.setGroupingUsed(false);
+         format.setMinimumFractionDigits(fractionDigits);
+         format.setMaximumFractionDigits(fractionDigits);
+         StringBuilder plain = new StringBuilder(format.format(Math.abs(value)));
+         if (value < 0)
+            out.append(minusSign);
+         appendPlainDecimal(plain, grouping, out);
+         return out;
+      }
+
+      long rounded = (long) scaled;
+      if (value < 0 && rounded != 0)
+         out.append(minusSign);
+
+      appendInteger(-(rounded / scale), grouping, out);
+      if (fractionDigits > 0) {
+         out.append(decimalSeparator);
+         long fraction = rounded % scale;
+         int start = out.length();
+         out.setLength(start + fractionDigits);
+         for (int i = start + fractionDigits - 1; i >= start; i--) {
+            out.setCharAt(i, (char) (zeroDigit + fraction % 10));
+            fraction /= 10;
+         }
+      }
+      return out;
+   }
+
+   /**
+    * Appends a byte count with a binary unit, like 1.5 MB
+    *
+    * @param bytes          the byte count
+    * @param fractionDigits number of digits after the decimal separator for units above bytes
+    * @param out            where to append the formatted size
+    * @return out, for chaining
+    */
+   @NonNull
+   public StringBuilder formatBytes(long bytes, int fractionDigits, @NonNull StringBuilder out) {
+      if (fractionDigits < 0 || fractionDigits >= POWERS_OF_TEN.length)
+         throw new IllegalArgumentException("fractionDigits must be between 0 and 18: " + fractionDigits);
+
+      long magnitude = Math.abs(bytes);
+      if (magnitude < 1024 || bytes == Long.MIN_VALUE)
+         return format(bytes, true, out).append(' ').append(BYTE_UNITS[0]);
+
+      int unit = (63 - Long.numberOfLeadingZeros(magnitude)) / 10;
+      double value = bytes / (double) (1L << (unit * 10));
+      //1023.96 KB rounds to 1024.0 KB, show 1.0 MB instead
+      long scale = POWERS_OF_TEN[fractionDigits];
+      if (unit < BYTE_UNITS.length - 1 && (long) (Math.abs(value) * scale + 0.5) >= 1024 * scale) {
+         unit++;
+         value /= 1024;
+      }
+      return format(value, fractionDigits, true, out).append(' ').append(BYTE_UNITS[unit]);
+   }
+
+   /**
+    * Writes an integer into a char array
+    *
+    * @param value    the value
+    * @param grouping whether to add the locale's grouping separators
+    * @param out      the destination, must have room for up to 28 chars
+    * @param offset   index of the first char to write
+    * @return the number of chars written
+    */
+   public int format(long value, boolean grouping, @NonNull char[] out, int offset) {
+      long negative = value > 0 ? -value : value;
+      int position = offset;
+      if (value < 0)
+         out[position++] = minusSign;
+
+      int digits = digitCount(negative);
+      int length = integerLength(digits, grouping);
+      int index = position + length - 1;
+      int written = 0;
+      do {
+         if (grouping && isGroupBoundary(written))
+            out[index--] = groupingSeparator;
+         out[index--] = (char) (zeroDigit - negative % 10);
+         negative /= 10;
+         written++;
+      } while (negative != 0);
+      return position + length - offset;
+   }
+
+   private void appendInteger(long negative, boolean grouping, @NonNull StringBuilder out) {
+      int digits = digitCount(negative);
+      int start = out.length();
+      int length = integerLength(digits, grouping);
+      out.setLength(start + length);
+
+      int index = start + length - 1;
+      int written = 0;
+      do {
+         if (grouping && isGroupBoundary(written))
+            out.setCharAt(index--, groupingSeparator);
+         out.setCharAt(index--, (char) (zeroDigit - negative % 10));
+         negative /= 10;
+         written++;
+      } while (negative != 0);
+   }
+
+   /**
+    * Appends a plain ASCII decimal like 12345.67 with the locale's digits and separators
+    */
+   private void appendPlainDecimal(@NonNull CharSequence plain, boolean grouping, @NonNull StringBuilder out) {
+      int point = 0;
+      while (point < plain.length() && plain.charAt(point) != '.')
+         point++;
+
+      for (int i = 0; i < plain.length(); i++) {
+         char ch = plain.charAt(i);
+         if (ch == '.') {
+            out.append(decimalSeparator);
+         } else {
+            if (grouping && i > 0 && i < point && isGroupBoundary(point - i))
+               out.append(groupingSeparator);
+            out.append((char) (zeroDigit + (ch - '0')));
+         }
+      }
+   }
+
+   /**
+    * @param digits number of integer digits right of the position
+    * @return whether a grouping separator goes at the position
+    */
+   private boolean isGroupBoundary(int digits) {
+      if (groupingSize <= 0 || digits < groupingSize)
+         return false;
+      return digits == groupingSize || (digits - groupingSize) % secondaryGroupingSize == 0;
+   }
+
+   private int integerLength(int digits, boolean grouping) {
+      if (!grouping || groupingSize <= 0 || digits <= groupingSize)
+         return digits;
+      return digits + 1 + (digits - 1 - groupingSize) / secondaryGroupingSize;
+   }
+
+   private static int digitCount(long negative) {
+      int digits = 1;
+      while (negative <= -10) {
+         negative /= 10;
+         digits++;
+      }
+      return digits;
+   }
+}
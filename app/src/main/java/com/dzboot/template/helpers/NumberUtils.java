@@ -1,47 +1,57 @@
 package com.dzboot.template.helpers;
 
+import java.util.Locale;
+
 
 @SuppressWarnings("unused")
 public class NumberUtils {
 
    public static String arabicToEnglishNumeralsFancyWay(String number) {
-      char[] chars = new char[number.length()];
-      for (int i = 0; i < number.length(); i++) {
-         char ch = number.charAt(i);
-         if (ch >= 0x0660 && ch <= 0x0669)
-            ch -= 0x0660 - '0';
-         else if (ch >= 0x06f0 && ch <= 0x06F9)
-            ch -= 0x06f0 - '0';
-         chars[i] = ch;
-      }
-      return new String(chars);
+      return NumeralTransliterator.transliterate(number, NumeralTransliterator.LATIN);
    }
 
    public static String arabicToEnglishNumerals(String value) {
-      return String.valueOf(value)
-            .replaceAll("١", "1")
-            .replaceAll("٢", "2")
-            .replaceAll("٣", "3")
-            .replaceAll("٤", "4")
-            .replaceAll("٥", "5")
-            .replaceAll("٦", "6")
-            .replaceAll("٧", "7")
-            .replaceAll("٨", "8")
-            .replaceAll("٩", "9")
-            .replaceAll("٠", "0");
+      return NumeralTransliterator.transliterate(String.valueOf(value), NumeralTransliterator.LATIN);
    }
 
    public static String englishToArabicNumerals(int value) {
-      return String.valueOf(value)
-            .replaceAll("1", "١")
-            .replaceAll("2", "٢")
-            .replaceAll("3", "٣")
-            .replaceAll("4", "٤")
-            .replaceAll("5", "٥")
-            .replaceAll("6", "٦")
-            .replaceAll("7", "٧")
-            .replaceAll("8", "٨")
-            .replaceAll("9", "٩")
-            .replaceAll("0", "٠");
+      return NumeralTransliterator.transliterate(String.valueOf(value), NumeralTransliterator.ARABIC_INDIC);
+   }
+
+   /**
+    * Appends the number with the digits and grouping separators of the locale
+    *
+    * @param value  the value
+    * @param locale the locale
+    * @param out    where to append the formatted number, reuse it to avoid allocations
+    * @return out, for chaining
+    */
+   public static StringBuilder formatNative(long value, Locale locale, StringBuilder out) {
+      return NativeNumberFormat.getInstance(locale).format(value, true, out);
+   }
+
+   /**
+    * Appends the number with the digits and separators of the locale
+    *
+    * @param value          the value
+    * @param fractionDigits number of digits after the decimal separator
+    * @param locale         the locale
+    * @param out            where to append the formatted number, reuse it to avoid allocations
+    * @return out, for chaining
+    */
+   public static StringBuilder formatNative(double value, int fractionDigits, Locale locale, StringBuilder out) {
+      return NativeNumberFormat.getInstance(locale).format(value, fractionDigits, true, out);
+   }
+
+   /**
+    * Appends the byte count with a binary unit and the digits of the locale, like 1.5 MB
+    *
+    * @param bytes  the byte count
+    * @param locale the locale
+    * @param out    where to append the formatted size, reuse it to avoid allocations
+    * @return out, for chaining
+    */
+   public static StringBuilder formatNativeBytes(long bytes, Locale locale, StringBuilder out) {
+      return NativeNumberFormat.getInstance(locale).formatBytes(bytes, 1, out);
    }
 }
@@ -0,0 +1,137 @@
+package com.dzboot.template.helpers;
+
+import androidx.annotation.NonNull;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+
+/**
+ * Reader converting the digits of every script to the digits of one target script while reading,
+ * so large inputs are normalized chunk by chunk in constant memory.
+ */
+@SuppressWarnings("unused")
+public class NumeralFilterReader extends FilterReader {
+
+   private static final int BUFFER_SIZE = 8192;
+
+   private final char targetZero;
+   private final char[] buffer = new char[BUFFER_SIZE];
+   private int position;
+   private int limit;
+   //high surrogate ending the last chunk, held back in case its pair is a digit
+   private int pendingSurrogate = -1;
+
+
+   /**
+    * @param in         the reader to wrap
+    * @param targetZero the zero digit of the target script, see {@link NumeralTransliterator} constants
+    */
+   public NumeralFilterReader(@NonNull Reader in, char targetZero) {
+      super(in);
+      if (NumeralTransliterator.digitValue(targetZero) != 0)
+         throw new IllegalArgumentException("Not a zero digit: " + Integer.toHexString(targetZero));
+      this.targetZero = targetZero;
+   }
+
+   /**
+    * Wraps the reader to convert every digit to ASCII digits
+    */
+   @NonNull
+   public static NumeralFilterReader toLatin(@NonNull Reader in) {
+      return new NumeralFilterReader(in, NumeralTransliterator.LATIN);
+   }
+
+   /**
+    * Reads and converts the next chunk
+    *
+    * @return false at the end of the stream
+    */
+   private boolean fill() throws IOException {
+      int start = 0;
+      if (pendingSurrogate >= 0) {
+         buffer[start++] = (char) pendingSurrogate;
+         pendingSurrogate = -1;
+      }
+
+      int read = in.read(buffer, start, buffer.length - start);
+      if (read == -1) {
+         position = 0;
+         limit = start;
+         return start > 0;
+      }
+
+      int end = start + read;
+      if (Character.isHighSurrogate(buffer[end - 1])) {
+         pendingSurrogate = buffer[--end];
+         if (end == 0)
+            return fill();
+      }
+
+      position = 0;
+      limit = NumeralTransliterator.transliterate(buffer, 0, end, targetZero);
+      return true;
+   }
+
+   @Override
+   public int read() throws IOException {
+      synchronized (lock) {
+         if (position == limit && !fill())
+            return -1;
+         return buffer[position++];
+      }
+   }
+
+   @Override
+   public int read(@NonNull char[] chars, int offset, int length) throws IOException {
+      synchronized (lock) {
+         if (length == 0)
+            return 0;
+         if (position == limit && !fill())
+            return -1;
+
+         int count = Math.min(length, limit - position);
+         System.arraycopy(buffer, position, chars, offset, count);
+         position += count;
+         return count;
+      }
+   }
+
+   @Override
+   public long skip(long n) throws IOException {
+      synchronized (lock) {
+         long skipped = 0;
+         while (skipped < n) {
+            if (position == limit && !fill())
+               break;
+            int count = (int) Math.min(n - skipped, limit - position);
+            position += count;
+            skipped += count;
+         }
+         return skipped;
+      }
+   }
+
+   @Override
+   public boolean ready() throws IOException {
+      synchronized (lock) {
+         return position < limit || in.ready();
+      }
+   }
+
+   @Override
+   public boolean markSupported() {
+      return false;
+   }
+
+   @Override
+   public void mark(int readAheadLimit) throws IOException {
+      throw new IOException("mark() not supported");
+   }
+
+   @Override
+   public void reset() throws IOException {
+      throw new IOException("reset() not supported");
+   }
+}
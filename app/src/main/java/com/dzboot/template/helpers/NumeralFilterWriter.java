@@ -0,0 +1,107 @@
+package com.dzboot.template.helpers;
+
+import androidx.annotation.NonNull;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+
+/**
+ * Writer converting the digits of every script to the digits of one target script before passing
+ * the text on, chunk by chunk in constant memory. A trailing high surrogate is held back until its pair
+ * is written or the writer is closed.
+ */
+@SuppressWarnings("unused")
+public class NumeralFilterWriter extends FilterWriter {
+
+   private static final int BUFFER_SIZE = 8192;
+
+   private final char targetZero;
+   private final char[] buffer = new char[BUFFER_SIZE];
+   private int pendingSurrogate = -1;
+
+
+   /**
+    * @param out        the writer to wrap
+    * @param targetZero the zero digit of the target script, see {@link NumeralTransliterator} constants
+    */
+   public NumeralFilterWriter(@NonNull Writer out, char targetZero) {
+      super(out);
+      if (NumeralTransliterator.digitValue(targetZero) != 0)
+         throw new IllegalArgumentException("Not a zero digit: " + Integer.toHexString(targetZero));
+      this.targetZero = targetZero;
+   }
+
+   /**
+    * Wraps the writer to convert every digit to ASCII digits
+    */
+   @NonNull
+   public static NumeralFilterWriter toLatin(@NonNull Writer out) {
+      return new NumeralFilterWriter(out, NumeralTransliterator.LATIN);
+   }
+
+   @Override
+   public void write(int c) throws IOException {
+      synchronized (lock) {
+         buffer[0] = (char) c;
+         writeBuffered(1);
+      }
+   }
+
+   @Override
+   public void write(@NonNull char[] chars, int offset, int length) throws IOException {
+      synchronized (lock) {
+         while (length > 0) {
+            int count = Math.min(length, buffer.length - 1);
+            System.arraycopy(chars, offset, buffer, 0, count);
+            writeBuffered(count);
+            offset += count;
+            length -= count;
+         }
+      }
+   }
+
+   @Override
+   public void write(@NonNull String text, int offset, int length) throws IOException {
+      synchronized (lock) {
+         while (length > 0) {
+            int count = Math.min(length, buffer.length - 1);
+            text.getChars(offset, offset + count, buffer, 0);
+            writeBuffered(count);
+            offset += count;
+            length -= count;
+         }
+      }
+   }
+
+   /**
+    * Converts and writes the first count chars of the buffer, preceded by the held back surrogate if any
+    */
+   private void writeBuffered(int count) throws IOException {
+      if (pendingSurrogate >= 0) {
+         System.arraycopy(buffer, 0, buffer, 1, count);
+         buffer[0] = (char) pendingSurrogate;
+         pendingSurrogate = -1;
+         count++;
+      }
+
+      if (Character.isHighSurrogate(buffer[count - 1]))
+         pendingSurrogate = buffer[--count];
+      if (count == 0)
+         return;
+
+      out.write(buffer, 0, NumeralTransliterator.transliterate(buffer, 0, count, targetZero));
+   }
+
+   @Override
+   public void close() throws IOException {
+      synchronized (lock) {
+         if (pendingSurrogate >= 0) {
+            out.write(pendingSurrogate);
+            pendingSurrogate = -1;
+         }
+      }
+      super.close();
+   }
+}
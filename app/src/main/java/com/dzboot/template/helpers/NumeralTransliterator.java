@@ -0,0 +1,242 @@
+package com.dzboot.template.helpers;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+
+
+/**
+ * Converts the decimal digits of any Unicode script (every Nd block: Latin, Arabic-Indic, Persian,
+ * Devanagari, Bengali, Thai...) to the digits of one target script, in a single pass driven by a lookup table.
+ * The {@link Appendable} and char[] variants do not allocate.
+ */
+@SuppressWarnings("unused")
+public final class NumeralTransliterator {
+
+   public static final char LATIN = '0';
+   public static final char ARABIC_INDIC = '٠';
+   public static final char EXTENDED_ARABIC_INDIC = '۰';
+   public static final char NKO = '߀';
+   public static final char DEVANAGARI = '०';
+   public static final char BENGALI = '০';
+   public static final char GURMUKHI = '੦';
+   public static final char GUJARATI = '૦';
+   public static final char ORIYA = '୦';
+   public static final char TAMIL = '௦';
+   public static final char TELUGU = '౦';
+   public static final char KANNADA = '೦';
+   public static final char MALAYALAM = '൦';
+   public static final char THAI = '๐';
+   public static final char LAO = '໐';
+   public static final char TIBETAN = '༠';
+   public static final char MYANMAR = '၀';
+   public static final char KHMER = '០';
+   public static final char MONGOLIAN = '᠐';
+   public static final char FULLWIDTH = '０';
+
+   //digit value + 1 of every BMP char, split in 256 chars pages, pages without digits are null
+   private static final byte[][] PAGES = buildPages();
+
+
+   private NumeralTransliterator() {}
+
+   private static byte[][] buildPages() {
+      byte[][] pages = new byte[256][];
+      for (int ch = 0; ch <= 0xFFFF; ch++) {
+         if (Character.getType(ch) == Character.DECIMAL_DIGIT_NUMBER) {
+            int value = Character.digit(ch, 10);
+            if (value < 0)
+               continue;
+
+            byte[] page = pages[ch >>> 8];
+            if (page == null)
+               page = pages[ch >>> 8] = new byte[256];
+            page[ch & 0xFF] = (byte) (value + 1);
+         }
+      }
+      return pages;
+   }
+
+   /**
+    * @param ch any char
+    * @return the value of the char if it is a decimal digit of any script, -1 otherwise
+    */
+   public static int digitValue(char ch) {
+      byte[] page = PAGES[ch >>> 8];
+      return page == null ? -1 : page[ch & 0xFF] - 1;
+   }
+
+   /**
+    * @param codePoint any code point, including supplementary ones
+    * @return the value of the code point if it is a decimal digit of any script, -1 otherwise
+    */
+   public static int digitValue(int codePoint) {
+      if (codePoint <= 0xFFFF)
+         return digitValue((char) codePoint);
+      return Character.getType(codePoint) == Character.DECIMAL_DIGIT_NUMBER ? Character.digit(codePoint, 10) : -1;
+   }
+
+   /**
+    * Converts every digit of the text to the target script
+    *
+    * @param text       the text to convert
+    * @param targetZero the zero digit of the target script, one of the constants of this class
+    * @return the converted text, the same instance if it had nothing to convert
+    */
+   @NonNull
+   public static String transliterate(@NonNull String text, char targetZero) {
+      checkTarget(targetZero);
+      int length = text.length();
+      int i = 0;
+      while (i < length && !needsConversion(text.charAt(i), targetZero))
+         i++;
+      if (i == length)
+         return text;
+
+      char[] chars = text.toCharArray();
+      return new String(chars, 0, transliterate(chars, i, length - i, targetZero) + i);
+   }
+
+   /**
+    * Converts every digit of the text to the target script and appends the result
+    *
+    * @param text       the text to convert
+    * @param targetZero the zero digit of the target script, one of the constants of this class
+    * @param out        where to append the converted text
+    * @throws IOException if the appendable throws it
+    */
+   public static void transliterate(@NonNull CharSequence text, char targetZero, @NonNull Appendable out)
+         throws IOException {
+      checkTarget(targetZero);
+      int length = text.length();
+      for (int i = 0; i < length; i++) {
+         char ch = text.charAt(i);
+         if (Character.isHighSurrogate(ch) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+            int value = digitValue(Character.toCodePoint(ch, text.charAt(i + 1)));
+            if (value >= 0) {
+               out.append((char) (targetZero + value));
+               i++;
+               continue;
+            }
+         }
+
+         int value = digitValue(ch);
+         out.append(value < 0 ? ch : (char) (targetZero + value));
+      }
+   }
+
+   /**
+    * Converts every digit of the chars to the target script in place. Digits from supplementary planes
+    * take two chars and are replaced by one, so the text can shrink
+    *
+    * @param chars      the chars to convert
+    * @param offset     index of the first char
+    * @param length     number of chars
+    * @param targetZero the zero digit of the target script, one of the constants of this class
+    * @return the new length of the converted range
+    */
+   public static int transliterate(@NonNull char[] chars, int offset, int length, char targetZero) {
+      checkTarget(targetZero);
+      int end = offset + length;
+      int write = offset;
+      for (int read = offset; read < end; read++) {
+         char ch = chars[read];
+         if (Character.isHighSurrogate(ch) && read + 1 < end && Character.isLowSurrogate(chars[read + 1])) {
+            int value = digitValue(Character.toCodePoint(ch, chars[read + 1]));
+            if (value >= 0) {
+               chars[write++] = (char) (targetZero + value);
+               read++;
+               continue;
+            }
+            chars[write++] = ch;
+            chars[write++] = chars[++read];
+            continue;
+         }
+
+         int value = digitValue(ch);
+         chars[write++] = value < 0 ? ch : (char) (targetZero + value);
+      }
+      return write - offset;
+   }
+
+   /**
+    * Converts every digit of the builder to the target script in place
+    *
+    * @param sb         the builder to convert
+    * @param targetZero the zero digit of the target script, one of the constants of this class
+    */
+   public static void transliterate(@NonNull StringBuilder sb, char targetZero) {
+      checkTarget(targetZero);
+      int write = 0;
+      int length = sb.length();
+      for (int read = 0; read < length; read++) {
+         char ch = sb.charAt(read);
+         if (Character.isHighSurrogate(ch) && read + 1 < length && Character.isLowSurrogate(sb.charAt(read + 1))) {
+            int value = digitValue(Character.toCodePoint(ch, sb.charAt(read + 1)));
+            if (value >= 0) {
+               sb.setCharAt(write++, (char) (targetZero + value));
+               read++;
+               continue;
+            }
+            sb.setCharAt(write++, ch);
+            sb.setCharAt(write++, sb.charAt(++read));
+            continue;
+         }
+
+         int value = digitValue(ch);
+         sb.setCharAt(write++, value < 0 ? ch : (char) (targetZero + value));
+      }
+      sb.setLength(write);
+   }
+
+   /**
+    * Converts the remaining chars of the input into the output, as many as fit. Like a CharsetDecoder,
+    * a high surrogate ending the input is left unread unless it is the end of the input, so the caller
+    * can compact the input, read more and call again
+    *
+    * @param in         the chars to convert, its position moves past the consumed chars
+    * @param out        where to put the converted chars, its position moves past the written chars
+    * @param targetZero the zero digit of the target script, one of the constants of this class
+    * @param endOfInput whether no more chars will follow the input
+    */
+   public static void transliterate(@NonNull CharBuffer in, @NonNull CharBuffer out, char targetZero,
+                                    boolean endOfInput) {
+      checkTarget(targetZero);
+      while (in.hasRemaining() && out.hasRemaining()) {
+         char ch = in.get(in.position());
+         if (Character.isHighSurrogate(ch)) {
+            if (in.remaining() < 2) {
+               if (!endOfInput)
+                  return;
+            } else if (Character.isLowSurrogate(in.get(in.position() + 1))) {
+               int value = digitValue(Character.toCodePoint(ch, in.get(in.position() + 1)));
+               if (value >= 0) {
+                  out.put((char) (targetZero + value));
+                  in.position(in.position() + 2);
+                  continue;
+               }
+               if (out.remaining() < 2)
+                  return;
+               out.put(ch).put(in.get(in.position() + 1));
+               in.position(in.position() + 2);
+               continue;
+            }
+         }
+
+         int value = digitValue(ch);
+         out.put(value < 0 ? ch : (char) (targetZero + value));
+         in.position(in.position() + 1);
+      }
+   }
+
+   private static boolean needsConversion(char ch, char targetZero) {
+      int value = digitValue(ch);
+      return (value >= 0 && ch != targetZero + value) || Character.isSurrogate(ch);
+   }
+
+   private static void checkTarget(char targetZero) {
+      if (digitValue(targetZero) != 0)
+         throw new IllegalArgumentException("Not a zero digit: " + Integer.toHexString(targetZero));
+   }
+}
@@ -0,0 +1,308 @@
+package com.dzboot.template.helpers;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.drawable.BitmapDrawable;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.DrawableRes;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.dzboot.template.BuildConfig;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import timber.log.Timber;
+
+
+/**
+ * Caches drawable resources resized to a px size, keyed by (resource, size, density), so the same icon is decoded
+ * and scaled once. The first level is an LRU of Bitmaps sized in bytes, the second is a directory of pre-scaled
+ * PNG (lossless WebP from R) files in the cache dir, which survives restarts and is cleared whenever the app is
+ * installed again, since resource ids may change between builds of the same version code.
+ * Disk files are written in the background, on the main thread use {@link #getCached} and {@link #getAsync}.
+ * <p>
+ * Cached Bitmaps are allocated outside {@link BitmapPool} and shared by every drawable made from them, so they are
+ * marked with {@link ImageUtils#markShared} and left to the GC once evicted, never recycled nor pooled.
+ */
+@SuppressWarnings("unused")
+public class ResizedDrawableCache {
+
+   private static final String DIRECTORY_PREFIX = "resized_";
+
+   private static volatile ResizedDrawableCache instance;
+
+   private final Context context;
+   private final File directory;
+   private final LruCache<String, Bitmap> memory;
+   private final ExecutorService disk = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "ResizedDrawableCache");
+      thread.setPriority(Thread.MIN_PRIORITY);
+      thread.setDaemon(true);
+      return thread;
+   });
+   private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+
+   public interface Callback {
+
+      /**
+       * Called on the main thread
+       *
+       * @param bitmap the resized Bitmap, shared with the cache
+       */
+      void onResized(@NonNull Bitmap bitmap);
+   }
+
+
+   private ResizedDrawableCache(@NonNull Context context, int maxBytes) {
+      this.context = context.getApplicationContext();
+      File cacheDir = this.context.getCacheDir();
+      directory = new File(cacheDir, DIRECTORY_PREFIX + BuildConfig.VERSION_CODE + '_' + lastUpdateTime());
+      memory = new LruCache<String, Bitmap>(maxBytes) {
+         @Override
+         protected int sizeOf(@NonNull String key, @NonNull Bitmap value) {
+            return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT ? value.getAllocationByteCount()
+                                                                       : value.getByteCount();
+         }
+      };
+      disk.execute(() -> deleteOldVersions(cacheDir));
+   }
+
+   /**
+    * @param context non-null context
+    * @return the cache used by {@link ImageUtils#resizeDrawable}, its memory level sized to 1/32 of the heap
+    */
+   @NonNull
+   public static ResizedDrawableCache get(@NonNull Context context) {
+      ResizedDrawableCache cache = instance;
+      if (cache == null) {
+         synchronized (ResizedDrawableCache.class) {
+            cache = instance;
+            if (cache == null)
+               instance = cache = new ResizedDrawableCache(context,
+                                                           (int) Math.min(Integer.MAX_VALUE,
+                                                                          Runtime.getRuntime().maxMemory() / 32));
+         }
+      }
+      return cache;
+   }
+
+   /**
+    * Releases memory according to {@link ComponentCallbacks2#onTrimMemory(int)}, disk files are kept
+    *
+    * @param level the trim level
+    */
+   public static void trimMemory(int level) {
+      ResizedDrawableCache cache = instance;
+      if (cache == null)
+         return;
+
+      if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND)
+         cache.memory.evictAll();
+      else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN ||
+               level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL)
+         cache.memory.trimToSize(cache.memory.maxSize() / 2);
+   }
+
+   /**
+    * Returns the resized resource, from memory, then disk, then by resizing it. Resizing results are written to
+    * disk in the background. On the main thread the disk is skipped and a miss is resized right away, prefer
+    * {@link #getAsync} there
+    *
+    * @param drawable a bitmap drawable resource
+    * @param sizePx   the width and height in px
+    * @return the resized Bitmap, shared with the cache
+    */
+   @NonNull
+   @AnyThread
+   public Bitmap get(@DrawableRes int drawable, int sizePx) {
+      String key = keyOf(drawable, sizePx);
+      Bitmap bitmap = memory.get(key);
+      if (bitmap != null)
+         return bitmap;
+
+      bitmap = Looper.myLooper() == Looper.getMainLooper() ? null : loadFromDisk(key);
+      if (bitmap == null) {
+         bitmap = resize(drawable, sizePx);
+         Bitmap toSave = bitmap;
+         disk.execute(() -> saveToDisk(key, toSave));
+      }
+      return remember(key, bitmap);
+   }
+
+   /**
+    * @return the resized resource if it is in memory, null otherwise, safe on the main thread
+    */
+   @Nullable
+   public Bitmap getCached(@DrawableRes int drawable, int sizePx) {
+      return memory.get(keyOf(drawable, sizePx));
+   }
+
+   /**
+    * Same as {@link #get} but the disk and the resizing are accessed on a background thread,
+    * a memory hit calls back immediately
+    */
+   @MainThread
+   public void getAsync(@DrawableRes int drawable, int sizePx, @NonNull Callback callback) {
+      String key = keyOf(drawable, sizePx);
+      Bitmap cached = memory.get(key);
+      if (cached != null) {
+         callback.onResized(cached);
+         return;
+      }
+
+      disk.execute(() -> {
+         Bitmap bitmap = memory.get(key);
+         if (bitmap == null) {
+            bitmap = loadFromDisk(key);
+            if (bitmap == null) {
+               bitmap = resize(drawable, sizePx);
+               saveToDisk(key, bitmap);
+            }
+            bitmap = remember(key, bitmap);
+         }
+         Bitmap result = bitmap;
+         mainHandler.post(() -> callback.onResized(result));
+      });
+   }
+
+   /**
+    * Loads the resized resources into memory in the background, for lists about to show them
+    */
+   public void prefetch(@NonNull int[] drawables, int sizePx) {
+      disk.execute(() -> {
+         for (int drawable : drawables) {
+            String key = keyOf(drawable, sizePx);
+            if (memory.get(key) != null)
+               continue;
+            Bitmap bitmap = loadFromDisk(key);
+            if (bitmap == null) {
+               bitmap = resize(drawable, sizePx);
+               saveToDisk(key, bitmap);
+            }
+            remember(key, bitmap);
+         }
+      });
+   }
+
+   /**
+    * Empties both levels
+    */
+   public void clear() {
+      memory.evictAll();
+      disk.execute(() -> {
+         File[] files = directory.listFiles();
+         if (files != null)
+            for (File file : files)
+               file.delete();
+      });
+   }
+
+   /**
+    * @return when the package was last installed, 0 if unknown
+    */
+   private long lastUpdateTime() {
+      try {
+         return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+      } catch (PackageManager.NameNotFoundException e) {
+         return 0;
+      }
+   }
+
+   @NonNull
+   private String keyOf(@DrawableRes int drawable, int sizePx) {
+      return Integer.toHexString(drawable) + '_' + sizePx + '_' + context.getResources().getDisplayMetrics().densityDpi;
+   }
+
+   /**
+    * Keeps the first Bitmap stored under the key when two threads resized it at the same time
+    */
+   @NonNull
+   private Bitmap remember(@NonNull String key, @NonNull Bitmap bitmap) {
+      synchronized (memory) {
+         Bitmap existing = memory.get(key);
+         if (existing != null)
+            return existing;
+         ImageUtils.markShared(bitmap);
+         memory.put(key, bitmap);
+         return bitmap;
+      }
+   }
+
+   /**
+    * Scales into a new Bitmap rather than one borrowed from {@link BitmapPool}, nothing gives cached Bitmaps back
+    */
+   @NonNull
+   private Bitmap resize(@DrawableRes int drawable, int sizePx) {
+      Bitmap source = ((BitmapDrawable) context.getResources().getDrawable(drawable)).getBitmap();
+      return Bitmap.createScaledBitmap(source, sizePx, sizePx, true);
+   }
+
+   @NonNull
+   private File fileOf(@NonNull String key) {
+      return new File(directory, key + (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R ? ".webp" : ".png"));
+   }
+
+   @Nullable
+   private Bitmap loadFromDisk(@NonNull String key) {
+      File file = fileOf(key);
+      if (!file.isFile())
+         return null;
+      BitmapFactory.Options options = new BitmapFactory.Options();
+      options.inScaled = false;
+      Bitmap bitmap = BitmapFactory.decodeFile(file.getPath(), options);
+      if (bitmap == null)
+         file.delete();
+      return bitmap;
+   }
+
+   private void saveToDisk(@NonNull String key, @NonNull Bitmap bitmap) {
+      File file = fileOf(key);
+      if (file.isFile())
+         return;
+      if (!directory.isDirectory() && !directory.mkdirs())
+         return;
+
+      Bitmap.CompressFormat format = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                                     ? Bitmap.CompressFormat.WEBP_LOSSLESS : Bitmap.CompressFormat.PNG;
+      File temp = new File(file.getPath() + ".tmp");
+      try (FileOutputStream out = new FileOutputStream(temp)) {
+         if (!bitmap.compress(format, 100, out))
+            throw new IOException("Could not compress " + key);
+      } catch (IOException e) {
+         Timber.w(e, "Could not save resized drawable");
+         temp.delete();
+         return;
+      }
+      if (!temp.renameTo(file))
+         temp.delete();
+   }
+
+   private void deleteOldVersions(@NonNull File cacheDir) {
+      File[] old = cacheDir.listFiles((dir, name) -> name.startsWith(DIRECTORY_PREFIX) &&
+                                                      !name.equals(directory.getName()));
+      if (old == null)
+         return;
+      for (File dir : old) {
+         File[] files = dir.listFiles();
+         if (files != null)
+            for (File file : files)
+               file.delete();
+         dir.delete();
+      }
+   }
+}
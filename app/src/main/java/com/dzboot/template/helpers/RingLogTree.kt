@@ -0,0 +1,251 @@
+package com.dzboot.template.helpers
+
+import android.util.Log
+import androidx.annotation.WorkerThread
+import timber.log.Timber
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.text.SimpleDateFormat
+import java.util.*
+
+
+/**
+ * Timber tree keeping the last logs in a fixed size memory mapped ring file. A log costs an encode
+ * straight into the mapping, and the kernel persists the pages even if the process is killed or crashes
+ * natively, so the logs leading to a crash can be decoded on the next launch with [readPreviousSession].
+ *
+ * Plant it early and call [open] on a background thread, it moves the file of the previous session aside and maps
+ * the new one. Logs arriving before that are kept in memory and written once the file is mapped.
+ */
+class RingLogTree @JvmOverloads constructor(
+   private val file: File,
+   private val capacity: Int = DEFAULT_CAPACITY,
+   private val minPriority: Int = Log.VERBOSE
+) : Timber.Tree() {
+
+   private val previousFile = File(file.path + PREVIOUS_SUFFIX)
+   //guarded by this, null until open
+   private var buffer: MappedByteBuffer? = null
+   private var pending: ArrayList<PendingLog>? = ArrayList()
+   private var writePosition = 0
+   private var sequence = 0L
+
+   init {
+      require(capacity >= 4 * MAX_MESSAGE_BYTES) { "Capacity too small: $capacity" }
+   }
+
+   /**
+    * Moves the previous session aside and maps the ring file, then writes the logs received so far.
+    * Does file I/O, call it off the main thread, once
+    */
+   @WorkerThread
+   fun open() {
+      if (file.exists()) {
+         previousFile.delete()
+         file.renameTo(previousFile)
+      }
+
+      //the mapping stays valid once the file is closed
+      val mapped = try {
+         RandomAccessFile(file, "rw").use { raf ->
+            raf.setLength((HEADER_SIZE + capacity).toLong())
+            raf.channel.map(FileChannel.MapMode.READ_WRITE, 0, (HEADER_SIZE + capacity).toLong())
+         }
+      } catch (e: IOException) {
+         synchronized(this) { pending = null }
+         Log.w("RingLogTree", "Could not map $file", e)
+         return
+      }
+      mapped.putInt(OFFSET_MAGIC, MAGIC)
+      mapped.putInt(OFFSET_VERSION, VERSION)
+      mapped.putInt(OFFSET_CAPACITY, capacity)
+      mapped.putInt(OFFSET_WRITE_POSITION, 0)
+      mapped.putInt(OFFSET_WRAPPED, 0)
+      mapped.putLong(OFFSET_SEQUENCE, 0)
+
+      synchronized(this) {
+         buffer = mapped
+         pending?.forEach { write(mapped, it.priority, it.tag, it.message, it.time) }
+         pending = null
+      }
+   }
+
+   /**
+    * Keeps logs below [minPriority] out of the ring, such as debug logs of release builds
+    */
+   override fun isLoggable(tag: String?, priority: Int) = priority >= minPriority
+
+   override fun log(priority: Int, tag: String?, message: String, t: Throwable?) {
+      //Timber already appended the stack trace of t to the message
+      val safeTag = if (tag != null && tag.length > MAX_TAG_CHARS) tag.substring(0, MAX_TAG_CHARS) else tag ?: ""
+      var text: CharSequence = message
+      if (Utf8Encoder.encodedLength(text) > MAX_MESSAGE_BYTES) {
+         //3 bytes per char at most, keeps the record under the limit
+         text = message.substring(0, MAX_MESSAGE_BYTES / 3)
+      }
+      val time = System.currentTimeMillis()
+
+      synchronized(this) {
+         val mapped = buffer
+         if (mapped != null)
+            write(mapped, priority, safeTag, text, time)
+         else
+            pending?.let { if (it.size < MAX_PENDING) it.add(PendingLog(priority, safeTag, text, time)) }
+      }
+   }
+
+   //guarded by this
+   private fun write(buffer: MappedByteBuffer, priority: Int, tag: String, text: CharSequence, time: Long) {
+      val tagBytes = Utf8Encoder.encodedLength(tag)
+      val length = RECORD_HEADER_SIZE + tagBytes + Utf8Encoder.encodedLength(text)
+      if (writePosition + length > capacity) {
+         if (capacity - writePosition >= 8) {
+            buffer.putInt(HEADER_SIZE + writePosition, WRAP)
+            buffer.putInt(HEADER_SIZE + writePosition + 4, WRAP xor RECORD_MAGIC)
+         }
+         writePosition = 0
+         buffer.putInt(OFFSET_WRAPPED, 1)
+      }
+
+      buffer.position(HEADER_SIZE + writePosition)
+      buffer.putInt(length)
+      buffer.putInt(length xor RECORD_MAGIC)
+      buffer.putLong(sequence)
+      buffer.putLong(time)
+      buffer.put(priority.toByte())
+      buffer.putShort(tagBytes.toShort())
+      Utf8Encoder.encode(tag, buffer)
+      Utf8Encoder.encode(text, buffer)
+
+      writePosition += length
+      sequence++
+      buffer.putInt(OFFSET_WRITE_POSITION, writePosition)
+      buffer.putLong(OFFSET_SEQUENCE, sequence)
+   }
+
+   /**
+    * Decodes the ring left by the previous session
+    *
+    * @return the log lines from oldest to newest, empty if there was no previous session
+    */
+   fun readPreviousSession(): List<String> = decode(previousFile)
+
+   companion object {
+
+      const val DEFAULT_CAPACITY = 512 * 1024
+      const val PREVIOUS_SUFFIX = ".prev"
+
+      private const val MAX_MESSAGE_BYTES = 8 * 1024
+      private const val MAX_TAG_CHARS = 64
+      //logs kept in memory until the file is mapped
+      private const val MAX_PENDING = 256
+
+      private const val MAGIC = 0x524C4F47 //RLOG
+      private const val VERSION = 1
+      private const val OFFSET_MAGIC = 0
+      private const val OFFSET_VERSION = 4
+      private const val OFFSET_CAPACITY = 8
+      private const val OFFSET_WRITE_POSITION = 12
+      private const val OFFSET_WRAPPED = 16
+      private const val OFFSET_SEQUENCE = 24
+      private const val HEADER_SIZE = 32
+
+      //length, check, sequence, time, priority, tag length
+      private const val RECORD_HEADER_SIZE = 4 + 4 + 8 + 8 + 1 + 2
+      private const val RECORD_MAGIC = 0x5EC0DE00
+      private const val WRAP = -1
+
+      /**
+       * Decodes a ring file into text lines
+       *
+       * @param file the ring file
+       * @return the log lines from oldest to newest, empty if the file does not exist or is not a ring
+       */
+      @JvmStatic
+      fun decode(file: File): List<String> {
+         if (!file.isFile || file.length() < HEADER_SIZE)
+            return emptyList()
+
+         val data = ByteBuffer.allocate(file.length().toInt())
+         RandomAccessFile(file, "r").use { raf ->
+            while (data.hasRemaining() && raf.channel.read(data) > 0) {
+            }
+         }
+         if (data.getInt(OFFSET_MAGIC) != MAGIC || data.getInt(OFFSET_VERSION) != VERSION)
+            return emptyList()
+
+         val capacity = data.getInt(OFFSET_CAPACITY)
+         val writePosition = data.getInt(OFFSET_WRITE_POSITION)
+         if (capacity <= 0 || HEADER_SIZE + capacity > data.capacity() || writePosition !in 0..capacity)
+            return emptyList()
+
+         val records = ArrayList<Record>()
+         readChain(data, capacity, 0, writePosition, records)
+         if (data.getInt(OFFSET_WRAPPED) != 0) {
+            //the record at writePosition may have been partly overwritten, resync on the next valid one
+            val newest = records.firstOrNull()?.sequence ?: Long.MAX_VALUE
+            var position = writePosition
+            while (position + RECORD_HEADER_SIZE <= capacity) {
+               if (isRecord(data, capacity, position) && data.getLong(HEADER_SIZE + position + 8) < newest) {
+                  readChain(data, capacity, position, capacity, records)
+                  break
+               }
+               position++
+            }
+         }
+         records.sortBy { it.sequence }
+
+         val dateFormat = SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US)
+         return records.map { "${dateFormat.format(Date(it.time))} ${priorityLetter(it.priority)}/${it.tag}: ${it.message}" }
+      }
+
+      private fun readChain(data: ByteBuffer, capacity: Int, start: Int, end: Int, out: MutableList<Record>) {
+         var position = start
+         while (position < end && isRecord(data, capacity, position)) {
+            val offset = HEADER_SIZE + position
+            val length = data.getInt(offset)
+            val tagLength = data.getShort(offset + 25).toInt()
+            val tagStart = offset + RECORD_HEADER_SIZE
+            out.add(
+               Record(
+                  sequence = data.getLong(offset + 8),
+                  time = data.getLong(offset + 16),
+                  priority = data.get(offset + 24).toInt(),
+                  tag = String(data.array(), tagStart, tagLength, Charsets.UTF_8),
+                  message = String(data.array(), tagStart + tagLength, length - RECORD_HEADER_SIZE - tagLength, Charsets.UTF_8)
+               )
+            )
+            position += length
+         }
+      }
+
+      private fun isRecord(data: ByteBuffer, capacity: Int, position: Int): Boolean {
+         if (position + RECORD_HEADER_SIZE > capacity)
+            return false
+         val offset = HEADER_SIZE + position
+         val length = data.getInt(offset)
+         if (length < RECORD_HEADER_SIZE || length > capacity - position || data.getInt(offset + 4) != (length xor RECORD_MAGIC))
+            return false
+         val tagLength = data.getShort(offset + 25).toInt()
+         return tagLength in 0..(length - RECORD_HEADER_SIZE)
+      }
+
+      private fun priorityLetter(priority: Int) = when (priority) {
+         Log.VERBOSE -> 'V'
+         Log.DEBUG -> 'D'
+         Log.INFO -> 'I'
+         Log.WARN -> 'W'
+         Log.ERROR -> 'E'
+         Log.ASSERT -> 'A'
+         else -> '?'
+      }
+   }
+
+   private class Record(val sequence: Long, val time: Long, val priority: Int, val tag: String, val message: String)
+
+   private class PendingLog(val priority: Int, val tag: String, val message: CharSequence, val time: Long)
+}
@@ -2,6 +2,7 @@ package com.dzboot.template.helpers
 
 import com.google.firebase.crashlytics.FirebaseCrashlytics
 import timber.log.Timber
+import kotlin.concurrent.thread
 
 object SystemUtils {
 
@@ -13,4 +14,32 @@ object SystemUtils {
 			recordException(this@reportToFirebase)
 			sendUnsentReports()
 		}
+
+	/**
+	 * If the previous session crashed, reports the logs it left in the ring file along with a non fatal,
+	 * so native crashes and ANRs get the context Crashlytics could not capture. Reads the file on a background thread
+	 */
+	fun RingLogTree.reportPreviousSessionCrash() {
+		if (!FirebaseCrashlytics.getInstance().didCrashOnPreviousExecution())
+			return
+
+		thread(name = "PreviousSessionReport") {
+			val lines = readPreviousSession()
+			if (lines.isEmpty())
+				return@thread
+
+			//Crashlytics keeps the last 64KB of logs, send the most recent lines
+			var size = 0
+			var first = lines.size
+			while (first > 0 && size + lines[first - 1].length + 1 <= PREVIOUS_SESSION_LOG_CHARS) {
+				first--
+				size += lines[first].length + 1
+			}
+			PreviousSessionCrash().reportToFirebase(lines.subList(first, lines.size).joinToString("\n"))
+		}
+	}
+
+	private const val PREVIOUS_SESSION_LOG_CHARS = 60 * 1024
+
+	class PreviousSessionCrash : Exception("The previous session crashed, its last logs are attached")
 }
\ No newline at end of file
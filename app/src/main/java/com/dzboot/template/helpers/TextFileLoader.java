@@ -0,0 +1,183 @@
+package com.dzboot.template.helpers;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+
+/**
+ * Loads text files through NIO with a single copy: the bytes land in a buffer sized after the file
+ * (or a memory mapping for large files) and are decoded in one pass. UTF-8 and UTF-16 byte order marks
+ * pick the charset and are dropped, files without one are read as UTF-8 unless told otherwise.
+ */
+@SuppressWarnings("unused")
+public class TextFileLoader {
+
+   //files from this size on are memory mapped instead of read into the heap
+   private static final long MAP_THRESHOLD = 256 * 1024;
+   private static final Charset UTF_8 = Charset.forName("UTF-8");
+   private static final Charset UTF_16BE = Charset.forName("UTF-16BE");
+   private static final Charset UTF_16LE = Charset.forName("UTF-16LE");
+
+
+   /**
+    * Loads the whole file into a String
+    *
+    * @param file the file
+    * @return the text without its byte order mark
+    * @throws IOException if the file cannot be read or is larger than 2 GB
+    */
+   @NonNull
+   public static String loadString(@NonNull File file) throws IOException {
+      return loadString(file, UTF_8);
+   }
+
+   /**
+    * Loads the whole file into a String. A String can only be decoded into from a byte[], so the file is read in
+    * the heap first, prefer {@link #loadCharBuffer} for large files, it decodes from a memory mapping instead
+    *
+    * @param file            the file
+    * @param fallbackCharset the charset to use when the file has no byte order mark
+    * @return the text without its byte order mark
+    * @throws IOException if the file cannot be read or is larger than 2 GB
+    */
+   @NonNull
+   public static String loadString(@NonNull File file, @NonNull Charset fallbackCharset) throws IOException {
+      try (FileInputStream in = new FileInputStream(file); FileChannel channel = in.getChannel()) {
+         int size = checkSize(channel.size());
+         //String(byte[]) decodes straight into the String, decoding a mapping would copy the chars once more
+         byte[] bytes = new byte[size];
+         readFully(channel, ByteBuffer.wrap(bytes));
+         ByteBuffer header = ByteBuffer.wrap(bytes);
+         Charset charset = detectCharset(header, fallbackCharset);
+         return new String(bytes, header.position(), size - header.position(), charset);
+      }
+   }
+
+   /**
+    * Loads the whole file into a CharBuffer, large files are decoded straight from a memory mapping
+    *
+    * @param file            the file
+    * @param fallbackCharset the charset to use when the file has no byte order mark
+    * @return the text without its byte order mark, flipped and ready to be read
+    * @throws IOException if the file cannot be read or is larger than 2 GB
+    */
+   @NonNull
+   public static CharBuffer loadCharBuffer(@NonNull File file, @NonNull Charset fallbackCharset) throws IOException {
+      try (FileInputStream in = new FileInputStream(file); FileChannel channel = in.getChannel()) {
+         int size = checkSize(channel.size());
+         ByteBuffer bytes;
+         if (size >= MAP_THRESHOLD) {
+            bytes = map(channel, size);
+         } else {
+            bytes = ByteBuffer.allocate(size);
+            readFully(channel, bytes);
+            bytes.flip();
+         }
+         return decode(bytes, fallbackCharset, size);
+      }
+   }
+
+   /**
+    * Opens a reader over the file for streaming, it never holds more than a small buffer of the file
+    *
+    * @param file            the file
+    * @param fallbackCharset the charset to use when the file has no byte order mark
+    * @return a reader positioned after the byte order mark, the caller must close it
+    * @throws IOException if the file cannot be opened
+    */
+   @NonNull
+   public static Reader openReader(@NonNull File file, @NonNull Charset fallbackCharset) throws IOException {
+      FileInputStream in = new FileInputStream(file);
+      try {
+         FileChannel channel = in.getChannel();
+         ByteBuffer header = ByteBuffer.allocate(3);
+         while (header.hasRemaining() && channel.read(header) != -1) ;
+         header.flip();
+         Charset charset = detectCharset(header, fallbackCharset);
+         channel.position(header.position());
+         return Channels.newReader(channel, newDecoder(charset), -1);
+      } catch (IOException e) {
+         in.close();
+         throw e;
+      }
+   }
+
+   /**
+    * Reads the byte order mark at the buffer's position and moves past it
+    *
+    * @return the charset the mark stands for, the fallback if there is none
+    */
+   @NonNull
+   static Charset detectCharset(@NonNull ByteBuffer bytes, @NonNull Charset fallbackCharset) {
+      int position = bytes.position();
+      int remaining = bytes.remaining();
+      if (remaining >= 3 && bytes.get(position) == (byte) 0xEF && bytes.get(position + 1) == (byte) 0xBB
+          && bytes.get(position + 2) == (byte) 0xBF) {
+         bytes.position(position + 3);
+         return UTF_8;
+      }
+      if (remaining >= 2 && bytes.get(position) == (byte) 0xFE && bytes.get(position + 1) == (byte) 0xFF) {
+         bytes.position(position + 2);
+         return UTF_16BE;
+      }
+      if (remaining >= 2 && bytes.get(position) == (byte) 0xFF && bytes.get(position + 1) == (byte) 0xFE) {
+         bytes.position(position + 2);
+         return UTF_16LE;
+      }
+      return fallbackCharset;
+   }
+
+   @NonNull
+   private static CharBuffer decode(@NonNull ByteBuffer bytes, @NonNull Charset fallbackCharset, int size)
+         throws CharacterCodingException {
+      CharsetDecoder decoder = newDecoder(detectCharset(bytes, fallbackCharset));
+      //maxCharsPerByte is exact for UTF-8 and UTF-16, the output buffer never has to grow
+      CharBuffer chars = CharBuffer.allocate((int) Math.ceil(bytes.remaining() * (double) decoder.maxCharsPerByte()));
+      CoderResult result = decoder.decode(bytes, chars, true);
+      if (!result.isUnderflow())
+         result.throwException();
+      result = decoder.flush(chars);
+      if (!result.isUnderflow())
+         result.throwException();
+      chars.flip();
+      return chars;
+   }
+
+   @NonNull
+   private static CharsetDecoder newDecoder(@NonNull Charset charset) {
+      return charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+   }
+
+   @NonNull
+   private static ByteBuffer map(@NonNull FileChannel channel, int size) throws IOException {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+   }
+
+   private static void readFully(@NonNull FileChannel channel, @NonNull ByteBuffer buffer) throws IOException {
+      while (buffer.hasRemaining()) {
+         if (channel.read(buffer) == -1)
+            throw new IOException("File shrank while reading it");
+      }
+   }
+
+   private static int checkSize(long size) throws IOException {
+      if (size > Integer.MAX_VALUE)
+         throw new IOException("File too large to load in memory: " + size + " bytes");
+      return (int) size;
+   }
+}
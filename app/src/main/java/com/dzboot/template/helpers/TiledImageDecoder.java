@@ -0,0 +1,409 @@
+package com.dzboot.template.helpers;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import timber.log.Timber;
+
+
+/**
+ * Shows very large images by decoding only the tiles of the visible region, at the sample size matching the zoom,
+ * with {@link BitmapRegionDecoder}. Tiles are decoded on a small pool, each worker with its own decoder since a
+ * region decoder decodes one region at a time. Decoded tiles are kept in an LRU sized from the screen and their
+ * Bitmaps go back to {@link BitmapPool} when evicted, so memory follows the screen size rather than the image size.
+ * Moving the viewport cancels the queued tiles which are no longer visible.
+ */
+@SuppressWarnings("unused")
+public class TiledImageDecoder implements Closeable {
+
+   //in decoded px, whatever the sample size
+   private static final int TILE_SIZE = 512;
+   private static final int WORKERS = 2;
+   //how often a worker waiting for a decoder checks whether it was closed
+   private static final long DECODER_WAIT_MS = 100;
+
+   private final File file;
+   private final int width;
+   private final int height;
+   private final Bitmap.Config config;
+   private final Listener listener;
+   private final Handler mainHandler = new Handler(Looper.getMainLooper());
+   private final ThreadPoolExecutor executor;
+   //one decoder per worker, created lazily
+   private final ArrayBlockingQueue<BitmapRegionDecoder> decoders = new ArrayBlockingQueue<>(WORKERS);
+   private final AtomicInteger decoderCount = new AtomicInteger();
+   private final LruCache<Long, Tile> tiles;
+   //main thread only
+   private final Map<Long, TileJob> pending = new HashMap<>();
+   private final List<Tile> visible = new ArrayList<>();
+   private volatile Set<Long> wanted = new HashSet<>();
+   private volatile boolean closed;
+
+
+   /**
+    * Called on the main thread when a visible tile is ready, typically to invalidate the view
+    */
+   public interface Listener {
+
+      void onTileReady(@NonNull Tile tile);
+   }
+
+   public static class Tile {
+
+      private final long key;
+      private final int sampleSize;
+      private final Rect region;
+      private final Bitmap bitmap;
+
+      Tile(long key, int sampleSize, @NonNull Rect region, @NonNull Bitmap bitmap) {
+         this.key = key;
+         this.sampleSize = sampleSize;
+         this.region = region;
+         this.bitmap = bitmap;
+      }
+
+      public int getSampleSize() {
+         return sampleSize;
+      }
+
+      /**
+       * @return the part of the image covered by the tile, in image px
+       */
+      @NonNull
+      public Rect getRegion() {
+         return region;
+      }
+
+      /**
+       * @return the pixels, only valid until the next frame, draw them scaled into {@link #getRegion()}
+       */
+      @NonNull
+      public Bitmap getBitmap() {
+         return bitmap;
+      }
+   }
+
+
+   private TiledImageDecoder(@NonNull File file, @NonNull BitmapRegionDecoder first, @Nullable Bitmap.Config config,
+                             int cacheBytes, @NonNull Listener listener) {
+      this.file = file;
+      this.width = first.getWidth();
+      this.height = first.getHeight();
+      this.config = config == null ? Bitmap.Config.ARGB_8888 : config;
+      this.listener = listener;
+      decoders.offer(first);
+      decoderCount.set(1);
+
+      executor = new ThreadPoolExecutor(WORKERS, WORKERS, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                                        runnable -> {
+                                           Thread thread = new Thread(runnable, "TiledImageDecoder");
+                                           thread.setPriority(Thread.NORM_PRIORITY - 1);
+                                           return thread;
+                                        });
+      executor.allowCoreThreadTimeOut(true);
+
+      tiles = new LruCache<Long, Tile>(cacheBytes) {
+         @Override
+         protected int sizeOf(@NonNull Long key, @NonNull Tile tile) {
+            return tile.bitmap.getByteCount();
+         }
+
+         @Override
+         protected void entryRemoved(boolean evicted, @NonNull Long key, @NonNull Tile old, @Nullable Tile replaced) {
+            //the main thread may be drawing it, give it back once the frame is done
+            mainHandler.post(() -> {
+               visible.remove(old);
+               ImageUtils.releaseBitmap(old.bitmap);
+            });
+         }
+      };
+   }
+
+   /**
+    * @param file          the image, JPEG, PNG or WebP
+    * @param config        the tile config, RGB_565 halves the memory of opaque images, null for ARGB_8888
+    * @param screenWidth   width of the screen or view in px
+    * @param screenHeight  height of the screen or view in px
+    * @param listener      receives the decoded tiles
+    * @return the decoder, to close when the image is no longer shown
+    * @throws IOException if the file can't be read or its format doesn't support region decoding
+    */
+   @NonNull
+   public static TiledImageDecoder open(@NonNull File file, @Nullable Bitmap.Config config, int screenWidth,
+                                        int screenHeight, @NonNull Listener listener) throws IOException {
+      BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(file.getPath(), false);
+      //the visible tiles, partial tiles on each side and the previous zoom level
+      int cacheBytes = (screenWidth + 2 * TILE_SIZE) * (screenHeight + 2 * TILE_SIZE) *
+                       BitmapDecoder.bytesPerPixel(config) * 2;
+      return new TiledImageDecoder(file, decoder, config, cacheBytes, listener);
+   }
+
+   public int getWidth() {
+      return width;
+   }
+
+   public int getHeight() {
+      return height;
+   }
+
+   /**
+    * @param scale displayed px per image px
+    * @return the largest power of two sample size which still gives at least one decoded px per displayed px
+    */
+   public static int sampleSizeForScale(float scale) {
+      if (scale >= 1 || scale <= 0)
+         return 1;
+      return Integer.highestOneBit(Math.max(1, (int) (1 / scale)));
+   }
+
+   /**
+    * Moves the viewport: queues the missing tiles and cancels those no longer visible
+    *
+    * @param viewport the visible part of the image, in image px
+    * @param scale    displayed px per image px
+    * @return the visible tiles already decoded, only valid until the next call or tile
+    */
+   @NonNull
+   @MainThread
+   public List<Tile> setViewport(@NonNull Rect viewport, float scale) {
+      visible.clear();
+      if (closed)
+         return visible;
+
+      int sampleSize = sampleSizeForScale(scale);
+      int span = TILE_SIZE * sampleSize;
+      int visibleLeft = Math.max(0, viewport.left);
+      int visibleTop = Math.max(0, viewport.top);
+      int visibleRight = Math.min(width, viewport.right);
+      int visibleBottom = Math.min(height, viewport.bottom);
+
+      Set<Long> needed = new HashSet<>();
+      //off the image, the division would round toward tile 0,0
+      if (visibleRight <= visibleLeft || visibleBottom <= visibleTop) {
+         wanted = needed;
+         cancelPending(needed);
+         return visible;
+      }
+
+      int left = visibleLeft / span;
+      int top = visibleTop / span;
+      int right = (visibleRight - 1) / span;
+      int bottom = (visibleBottom - 1) / span;
+      for (int row = top; row <= bottom; row++) {
+         for (int column = left; column <= right; column++) {
+            long key = keyOf(sampleSize, row, column);
+            needed.add(key);
+            Tile tile = tiles.get(key);
+            if (tile != null) {
+               visible.add(tile);
+            } else if (!pending.containsKey(key)) {
+               Rect region = new Rect(column * span, row * span, Math.min(width, (column + 1) * span),
+                                      Math.min(height, (row + 1) * span));
+               TileJob job = new TileJob(key, sampleSize, region);
+               pending.put(key, job);
+               job.future = executor.submit(job);
+            }
+         }
+      }
+      wanted = needed;
+      cancelPending(needed);
+      return visible;
+   }
+
+   /**
+    * Cancels the queued tiles not in needed and takes them out of the executor's queue
+    */
+   private void cancelPending(@NonNull Set<Long> needed) {
+      boolean cancelled = false;
+      Iterator<Map.Entry<Long, TileJob>> iterator = pending.entrySet().iterator();
+      while (iterator.hasNext()) {
+         Map.Entry<Long, TileJob> entry = iterator.next();
+         if (!needed.contains(entry.getKey())) {
+            cancelled |= entry.getValue().future.cancel(false);
+            iterator.remove();
+         }
+      }
+      //cancelled futures otherwise stay queued until a worker reaches them
+      if (cancelled)
+         executor.purge();
+   }
+
+   /**
+    * @return the visible tiles decoded so far, only valid until the next call or tile
+    */
+   @NonNull
+   @MainThread
+   public List<Tile> getVisibleTiles() {
+      return visible;
+   }
+
+   /**
+    * Drops the decoded tiles, for example when the app is in background
+    */
+   @MainThread
+   public void trimMemory() {
+      tiles.evictAll();
+   }
+
+   /**
+    * Cancels every tile and releases the decoders and the memory
+    */
+   @Override
+   @MainThread
+   public void close() {
+      closed = true;
+      cancelPending(new HashSet<>());
+      visible.clear();
+      executor.shutdown();
+      tiles.evictAll();
+      //workers still decoding recycle their decoder when they see closed
+      BitmapRegionDecoder decoder;
+      while ((decoder = decoders.poll()) != null)
+         decoder.recycle();
+   }
+
+   private static long keyOf(int sampleSize, int row, int column) {
+      return ((long) sampleSize << 48) | ((long) row << 24) | column;
+   }
+
+   private final class TileJob implements Runnable {
+
+      final long key;
+      final int sampleSize;
+      final Rect region;
+      //set on the main thread right after submitting, before the job can be cancelled
+      Future<?> future;
+
+      TileJob(long key, int sampleSize, @NonNull Rect region) {
+         this.key = key;
+         this.sampleSize = sampleSize;
+         this.region = region;
+      }
+
+      @Override
+      public void run() {
+         //the viewport moved since it was queued
+         Bitmap bitmap = closed || !wanted.contains(key) ? null : decodeTile(sampleSize, region);
+         mainHandler.post(() -> {
+            if (pending.get(key) == this)
+               pending.remove(key);
+            if (bitmap == null)
+               return;
+            if (closed) {
+               ImageUtils.releaseBitmap(bitmap);
+               return;
+            }
+
+            Tile tile = new Tile(key, sampleSize, region, bitmap);
+            tiles.put(key, tile);
+            if (wanted.contains(key)) {
+               visible.add(tile);
+               listener.onTileReady(tile);
+            }
+         });
+      }
+   }
+
+   @Nullable
+   private Bitmap decodeTile(int sampleSize, @NonNull Rect region) {
+      BitmapRegionDecoder decoder;
+      try {
+         decoder = acquireDecoder();
+      } catch (IOException e) {
+         Timber.w(e, "Could not open %s", file);
+         return null;
+      }
+
+      try {
+         BitmapFactory.Options options = new BitmapFactory.Options();
+         options.inSampleSize = sampleSize;
+         options.inPreferredConfig = config;
+         options.inMutable = true;
+         int tileWidth = (region.width() + sampleSize - 1) / sampleSize;
+         int tileHeight = (region.height() + sampleSize - 1) / sampleSize;
+         options.inBitmap = BitmapPool.get().getForDecode(tileWidth, tileHeight, 1, config);
+         try {
+            return decoder.decodeRegion(region, options);
+         } catch (IllegalArgumentException e) {
+            if (options.inBitmap == null)
+               throw e;
+            BitmapPool.get().put(options.inBitmap);
+            options.inBitmap = null;
+            return decoder.decodeRegion(region, options);
+         }
+      } catch (RuntimeException e) {
+         Timber.w(e, "Could not decode tile %s of %s", region, file);
+         return null;
+      } finally {
+         releaseDecoder(decoder);
+      }
+   }
+
+   /**
+    * Takes an idle decoder, opens one if fewer than {@link #WORKERS} exist, otherwise waits for one to be released.
+    * The wait is given up once closed, released decoders are recycled from then on
+    */
+   @NonNull
+   private BitmapRegionDecoder acquireDecoder() throws IOException {
+      while (true) {
+         BitmapRegionDecoder decoder = decoders.poll();
+         if (decoder != null)
+            return decoder;
+         if (closed)
+            throw new IOException("Closed while waiting for a decoder");
+
+         if (decoderCount.incrementAndGet() <= WORKERS) {
+            boolean opened = false;
+            try {
+               decoder = BitmapRegionDecoder.newInstance(file.getPath(), false);
+               opened = true;
+               return decoder;
+            } finally {
+               if (!opened)
+                  decoderCount.decrementAndGet();
+            }
+         }
+         decoderCount.decrementAndGet();
+
+         try {
+            decoder = decoders.poll(DECODER_WAIT_MS, TimeUnit.MILLISECONDS);
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a decoder");
+         }
+         if (decoder != null)
+            return decoder;
+      }
+   }
+
+   private void releaseDecoder(@NonNull BitmapRegionDecoder decoder) {
+      if (closed || !decoders.offer(decoder))
+         decoder.recycle();
+   }
+}
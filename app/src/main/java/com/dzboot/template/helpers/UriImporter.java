@@ -0,0 +1,352 @@
+package com.dzboot.template.helpers;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import timber.log.Timber;
+
+
+/**
+ * Copies content Uris into app storage without going through heap buffers. The Uri's file descriptor is opened
+ * directly: regular files are copied with {@link FileChannel#transferTo}, which the kernel can do without user space
+ * copies, pipes and sockets are drained through pooled direct buffers. Many Uris are imported in parallel on a small
+ * bounded pool, reporting progress and throughput on the main thread.
+ */
+@SuppressWarnings("unused")
+public class UriImporter {
+
+   //transfers are chunked so a cancel is noticed within one chunk
+   private static final long TRANSFER_CHUNK = 8 * 1024 * 1024;
+   private static final int BUFFER_SIZE = 256 * 1024;
+   private static final ThreadPoolExecutor executor = BackgroundTask.newExecutor("UriImporter");
+   private static final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+
+   /**
+    * Receives progress on the main thread
+    */
+   public interface Listener {
+
+      /**
+       * @param copiedBytes    bytes copied so far, all Uris together
+       * @param importedFiles  Uris completely imported
+       * @param bytesPerSecond average throughput since the start
+       */
+      void onProgress(long copiedBytes, int importedFiles, long bytesPerSecond);
+
+      /**
+       * @param result final counters and files, see {@link Result#isCancelled()}
+       */
+      void onFinished(@NonNull Result result);
+   }
+
+   public static class Result {
+
+      private final List<File> files;
+      private final long copiedBytes;
+      private final long elapsedMs;
+      private final int failedFiles;
+      private final boolean cancelled;
+
+      Result(@NonNull List<File> files, long copiedBytes, long elapsedMs, int failedFiles, boolean cancelled) {
+         this.files = files;
+         this.copiedBytes = copiedBytes;
+         this.elapsedMs = elapsedMs;
+         this.failedFiles = failedFiles;
+         this.cancelled = cancelled;
+      }
+
+      /**
+       * @return the imported files in the order of the Uris, null for those which failed or were cancelled
+       */
+      @NonNull
+      public List<File> getFiles() {
+         return files;
+      }
+
+      public long getCopiedBytes() {
+         return copiedBytes;
+      }
+
+      public long getElapsedMs() {
+         return elapsedMs;
+      }
+
+      public long getBytesPerSecond() {
+         return copiedBytes * 1000 / Math.max(1, elapsedMs);
+      }
+
+      public int getFailedFiles() {
+         return failedFiles;
+      }
+
+      public boolean isCancelled() {
+         return cancelled;
+      }
+
+      @NonNull
+      @Override
+      public String toString() {
+         return String.format(Locale.US, "copied %d bytes in %d ms (%d B/s), %d failures%s", copiedBytes,
+                              elapsedMs, getBytesPerSecond(), failedFiles, cancelled ? ", cancelled" : "");
+      }
+   }
+
+   /**
+    * A running import, cancelling it deletes the partial files and keeps the files already imported
+    */
+   public static class Task extends BackgroundTask<Result> {
+
+      private final Listener listener;
+      private final File[] files;
+      private final long startTime = SystemClock.elapsedRealtime();
+      private final AtomicLong copiedBytes = new AtomicLong();
+      private final AtomicInteger importedFiles = new AtomicInteger();
+      private final AtomicInteger failedFiles = new AtomicInteger();
+      private final AtomicInteger pending;
+
+      Task(int count, @Nullable Listener listener) {
+         this.listener = listener;
+         this.files = new File[count];
+         this.pending = new AtomicInteger(count);
+      }
+
+      public long getCopiedBytes() {
+         return copiedBytes.get();
+      }
+
+      public long getBytesPerSecond() {
+         return copiedBytes.get() * 1000 / Math.max(1, SystemClock.elapsedRealtime() - startTime);
+      }
+
+      void addBytes(long bytes) {
+         copiedBytes.addAndGet(bytes);
+         reportProgress();
+      }
+
+      private void reportProgress() {
+         if (listener == null || !isProgressDue())
+            return;
+
+         long bytes = copiedBytes.get();
+         int imported = importedFiles.get();
+         long speed = getBytesPerSecond();
+         postProgress(() -> listener.onProgress(bytes, imported, speed));
+      }
+
+      void complete(int index, @Nullable File file) {
+         if (file != null) {
+            synchronized (files) {
+               files[index] = file;
+            }
+            importedFiles.incrementAndGet();
+            reportProgress();
+         } else {
+            failedFiles.incrementAndGet();
+         }
+         if (pending.decrementAndGet() == 0)
+            finish();
+      }
+
+      private void finish() {
+         List<File> list;
+         synchronized (files) {
+            list = Collections.unmodifiableList(Arrays.asList(files.clone()));
+         }
+         Result finalResult = new Result(list, copiedBytes.get(), SystemClock.elapsedRealtime() - startTime,
+                                         failedFiles.get(), isCancelled());
+         finish(finalResult, listener == null ? null : () -> listener.onFinished(finalResult));
+      }
+   }
+
+
+   /**
+    * Copies one Uri on the calling thread
+    *
+    * @param context     non-null context
+    * @param uri         the Uri to read
+    * @param destination the file to create or replace, written atomically
+    * @return number of bytes copied
+    * @throws IOException if the Uri can't be read or the file written
+    */
+   @WorkerThread
+   public static long importUri(@NonNull Context context, @NonNull Uri uri, @NonNull File destination)
+         throws IOException {
+      return copy(context, uri, destination, null);
+   }
+
+   /**
+    * Starts importing the Uris into the directory in parallel. Files are named after the Uris' display names,
+    * with a counter appended when the name is taken
+    *
+    * @param context   non-null context
+    * @param uris      the Uris to import
+    * @param directory where to create the files
+    * @param listener  progress and result receiver, called on the main thread
+    * @return the running task
+    */
+   @NonNull
+   public static Task importAll(@NonNull Context context, @NonNull List<Uri> uris, @NonNull File directory,
+                                @Nullable Listener listener) {
+      Context appContext = context.getApplicationContext();
+      Task task = new Task(uris.size(), listener);
+      if (uris.isEmpty()) {
+         task.finish();
+         return task;
+      }
+
+      for (int i = 0; i < uris.size(); i++) {
+         int index = i;
+         Uri uri = uris.get(i);
+         executor.execute(() -> {
+            File file = null;
+            if (!task.isCancelled()) {
+               try {
+                  file = reserveFile(directory, displayName(appContext, uri, index));
+                  copy(appContext, uri, file, task);
+               } catch (IOException | RuntimeException e) {
+                  Timber.w(e, "Could not import %s", uri);
+                  if (file != null)
+                     file.delete();
+                  file = null;
+               }
+            }
+            task.complete(index, file);
+         });
+      }
+      return task;
+   }
+
+   private static long copy(@NonNull Context context, @NonNull Uri uri, @NonNull File destination,
+                            @Nullable Task task) throws IOException {
+      ParcelFileDescriptor descriptor = context.getContentResolver().openFileDescriptor(uri, "r");
+      if (descriptor == null)
+         throw new FileNotFoundException("No descriptor for " + uri);
+
+      File part = new File(destination.getPath() + ".part");
+      long copied;
+      try (ParcelFileDescriptor ignored = descriptor;
+           FileInputStream input = new FileInputStream(descriptor.getFileDescriptor());
+           FileOutputStream output = new FileOutputStream(part)) {
+         FileChannel in = input.getChannel();
+         FileChannel out = output.getChannel();
+         //negative for pipes and sockets, which can't be seeked
+         long size = descriptor.getStatSize();
+         copied = size >= 0 ? transfer(in, out, size, task) : drain(in, out, task);
+      } catch (IOException e) {
+         part.delete();
+         throw e;
+      }
+
+      if (!part.renameTo(destination)) {
+         part.delete();
+         throw new IOException("Could not rename " + part + " to " + destination);
+      }
+      return copied;
+   }
+
+   private static long transfer(@NonNull FileChannel in, @NonNull FileChannel out, long size, @Nullable Task task)
+         throws IOException {
+      long position = 0;
+      while (position < size) {
+         checkCancelled(task);
+         long transferred = in.transferTo(position, Math.min(TRANSFER_CHUNK, size - position), out);
+         //the source shrank since we read its size
+         if (transferred <= 0)
+            break;
+         position += transferred;
+         if (task != null)
+            task.addBytes(transferred);
+      }
+      return position;
+   }
+
+   private static long drain(@NonNull FileChannel in, @NonNull FileChannel out, @Nullable Task task)
+         throws IOException {
+      ByteBuffer buffer = buffers.poll();
+      if (buffer == null)
+         buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+      long total = 0;
+      try {
+         buffer.clear();
+         int read;
+         while ((read = in.read(buffer)) != -1) {
+            checkCancelled(task);
+            if (read == 0)
+               continue;
+            buffer.flip();
+            while (buffer.hasRemaining())
+               out.write(buffer);
+            buffer.clear();
+            total += read;
+            if (task != null)
+               task.addBytes(read);
+         }
+      } finally {
+         //at most one idle buffer per worker is kept
+         if (buffers.size() < BackgroundTask.THREADS)
+            buffers.offer(buffer);
+      }
+      return total;
+   }
+
+   private static void checkCancelled(@Nullable Task task) throws InterruptedIOException {
+      if (task != null && task.isCancelled())
+         throw new InterruptedIOException("Import cancelled");
+   }
+
+   @NonNull
+   private static String displayName(@NonNull Context context, @NonNull Uri uri, int index) {
+      String name = null;
+      try {
+         name = "content".equalsIgnoreCase(uri.getScheme()) ? FileUtils.getFilePath(context, uri)
+                                                           : uri.getLastPathSegment();
+      } catch (RuntimeException e) {
+         Timber.w(e, "No display name for %s", uri);
+      }
+      if (name != null)
+         name = name.replace('/', '_').replace('\0', '_').trim();
+      return name == null || name.isEmpty() || name.startsWith(".") ? "import_" + index : name;
+   }
+
+   /**
+    * Atomically creates an empty file with the name, or "name (n).ext" when it is taken
+    */
+   @NonNull
+   private static File reserveFile(@NonNull File directory, @NonNull String name) throws IOException {
+      if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory())
+         throw new IOException("Could not create " + directory);
+
+      int dot = name.lastIndexOf('.');
+      String base = dot > 0 ? name.substring(0, dot) : name;
+      String extension = dot > 0 ? name.substring(dot) : "";
+      File file = new File(directory, name);
+      for (int n = 1; !file.createNewFile(); n++)
+         file = new File(directory, base + " (" + n + ")" + extension);
+      return file;
+   }
+}
@@ -0,0 +1,295 @@
+package com.dzboot.template.helpers;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Environment;
+import android.provider.DocumentsContract;
+import android.provider.MediaStore;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import timber.log.Timber;
+
+
+/**
+ * Resolves content Uris to file paths, many at a time. MediaStore Uris are grouped per collection and resolved with
+ * one {@code _id IN (...)} query per group projecting only {@code _id} and {@code _data}, Uris that need no query
+ * (files, external storage documents) are resolved locally and the rest fall back to one query each.
+ * Results are kept in an LRU cache which is cleared whenever a provider we queried notifies a change.
+ */
+@SuppressWarnings("unused")
+public class UriPathResolver {
+
+   private static final int CACHE_SIZE = 1024;
+   //stays well under SQLite's limit of 999 host parameters
+   private static final int MAX_IDS_PER_QUERY = 500;
+   private static final String[] PROJECTION = {MediaStore.MediaColumns._ID, MediaStore.MediaColumns.DATA};
+   //cached for Uris which have no path, so they are not queried again. Failed queries are not cached
+   private static final String UNRESOLVED = "";
+
+   private static volatile UriPathResolver instance;
+
+   private final Context context;
+   private final LruCache<Uri, String> cache = new LruCache<>(CACHE_SIZE);
+   private final Set<String> observedAuthorities = Collections.synchronizedSet(new HashSet<>());
+   private final ContentObserver observer = new ContentObserver(null) {
+      @Override
+      public void onChange(boolean selfChange) {
+         cache.evictAll();
+      }
+   };
+
+
+   private UriPathResolver(@NonNull Context context) {
+      this.context = context.getApplicationContext();
+   }
+
+   @NonNull
+   public static UriPathResolver get(@NonNull Context context) {
+      UriPathResolver resolver = instance;
+      if (resolver == null) {
+         synchronized (UriPathResolver.class) {
+            resolver = instance;
+            if (resolver == null)
+               instance = resolver = new UriPathResolver(context);
+         }
+      }
+      return resolver;
+   }
+
+   /**
+    * @param uri the Uri to resolve
+    * @return the file path, or null if it has none
+    */
+   @Nullable
+   @WorkerThread
+   public String resolve(@NonNull Uri uri) {
+      return resolveAll(Collections.singletonList(uri))[0];
+   }
+
+   /**
+    * Resolves many Uris with as few queries as possible
+    *
+    * @param uris the Uris to resolve
+    * @return the file paths in the same order as the Uris, null for those which have none
+    */
+   @NonNull
+   @WorkerThread
+   public String[] resolveAll(@NonNull List<Uri> uris) {
+      String[] paths = new String[uris.size()];
+      //collection -> (id -> indices of the Uris pointing to it)
+      Map<Uri, Map<String, List<Integer>>> groups = new LinkedHashMap<>();
+
+      for (int i = 0; i < paths.length; i++) {
+         Uri uri = uris.get(i);
+         String cached = cache.get(uri);
+         if (cached != null) {
+            paths[i] = cached;
+            continue;
+         }
+
+         String local = resolveLocally(uri);
+         if (local != null) {
+            paths[i] = local;
+            cache.put(uri, local);
+            continue;
+         }
+
+         String[] item = toCollectionItem(uri);
+         if (item != null) {
+            Uri collection = Uri.parse(item[0]);
+            Map<String, List<Integer>> ids = groups.get(collection);
+            if (ids == null)
+               groups.put(collection, ids = new LinkedHashMap<>());
+            List<Integer> indices = ids.get(item[1]);
+            if (indices == null)
+               ids.put(item[1], indices = new ArrayList<>(1));
+            indices.add(i);
+            continue;
+         }
+
+         observe(uri);
+         try {
+            String path = FileUtils.queryRealPath(context, uri);
+            paths[i] = path == null ? UNRESOLVED : path;
+            cache.put(uri, paths[i]);
+         } catch (Exception e) {
+            //a missing permission may be granted later, try again next time
+            Timber.w(e, "Could not resolve %s", uri);
+         }
+      }
+
+      for (Map.Entry<Uri, Map<String, List<Integer>>> group : groups.entrySet())
+         queryGroup(group.getKey(), group.getValue(), uris, paths);
+
+      for (int i = 0; i < paths.length; i++) {
+         if (UNRESOLVED.equals(paths[i]))
+            paths[i] = null;
+      }
+      return paths;
+   }
+
+   /**
+    * Drops everything cached, for example after the app changed files behind the providers' back
+    */
+   public void invalidate() {
+      cache.evictAll();
+   }
+
+   /**
+    * @return the path of Uris which need no query, null for the others
+    */
+   @Nullable
+   @SuppressLint("NewApi")
+   private String resolveLocally(@NonNull Uri uri) {
+      if ("file".equalsIgnoreCase(uri.getScheme()))
+         return uri.getPath();
+
+      if (!"content".equalsIgnoreCase(uri.getScheme()))
+         return null;
+
+      //the remote address, same as FileUtils.getRealPathFromURI_API19
+      if (FileUtils.isGooglePhotosUri(uri))
+         return uri.getLastPathSegment();
+
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT && FileUtils.isExternalStorageDocument(uri) &&
+          DocumentsContract.isDocumentUri(context, uri)) {
+         String docId = DocumentsContract.getDocumentId(uri);
+         String[] split = docId.split(":");
+         if ("primary".equalsIgnoreCase(split[0]))
+            return Environment.getExternalStorageDirectory() + "/" + (split.length > 1 ? split[1] : "");
+         return "storage" + "/" + docId.replace(":", "/");
+      }
+      return null;
+   }
+
+   /**
+    * @return the MediaStore collection and the row id the Uri points to, null if it is not a MediaStore item
+    */
+   @Nullable
+   @SuppressLint("NewApi")
+   private String[] toCollectionItem(@NonNull Uri uri) {
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT && FileUtils.isMediaDocument(uri) &&
+          DocumentsContract.isDocumentUri(context, uri)) {
+         String[] split = DocumentsContract.getDocumentId(uri).split(":");
+         if (split.length < 2 || !isDigits(split[1]))
+            return null;
+
+         Uri collection;
+         if ("image".equals(split[0]))
+            collection = MediaStore.Images.Media.EXTERNAL_CONTENT_URI;
+         else if ("video".equals(split[0]))
+            collection = MediaStore.Video.Media.EXTERNAL_CONTENT_URI;
+         else if ("audio".equals(split[0]))
+            collection = MediaStore.Audio.Media.EXTERNAL_CONTENT_URI;
+         else
+            return null;
+         return new String[]{collection.toString(), split[1]};
+      }
+
+      //content://media/<volume>/<type>/media/<id>
+      if (MediaStore.AUTHORITY.equals(uri.getAuthority())) {
+         List<String> segments = uri.getPathSegments();
+         String id = uri.getLastPathSegment();
+         if (segments.size() < 2 || !isDigits(id))
+            return null;
+
+         StringBuilder path = new StringBuilder();
+         for (int i = 0; i < segments.size() - 1; i++)
+            path.append('/').append(segments.get(i));
+         Uri collection = uri.buildUpon().path(path.toString()).clearQuery().build();
+         return new String[]{collection.toString(), id};
+      }
+      return null;
+   }
+
+   private void queryGroup(@NonNull Uri collection, @NonNull Map<String, List<Integer>> ids,
+                           @NonNull List<Uri> uris, @NonNull String[] paths) {
+      observe(collection);
+
+      List<String> pending = new ArrayList<>(ids.keySet());
+      Map<String, String> found = new HashMap<>(pending.size() * 2);
+      //ids of the chunks whose query failed, they are left unresolved and not cached
+      Set<String> failed = new HashSet<>();
+      for (int start = 0; start < pending.size(); start += MAX_IDS_PER_QUERY) {
+         List<String> chunk = pending.subList(start, Math.min(start + MAX_IDS_PER_QUERY, pending.size()));
+         StringBuilder selection = new StringBuilder(MediaStore.MediaColumns._ID).append(" IN (");
+         for (int i = 0; i < chunk.size(); i++)
+            selection.append(i == 0 ? "?" : ",?");
+         selection.append(')');
+
+         try (Cursor cursor = context.getContentResolver().query(collection, PROJECTION, selection.toString(),
+                                                                 chunk.toArray(new String[0]), null)) {
+            if (cursor == null) {
+               //the provider is not available right now
+               failed.addAll(chunk);
+               continue;
+            }
+            int idColumn = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns._ID);
+            int dataColumn = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.DATA);
+            while (cursor.moveToNext())
+               found.put(cursor.getString(idColumn), cursor.getString(dataColumn));
+         } catch (Exception e) {
+            Timber.w(e, "Could not query %s", collection);
+            failed.addAll(chunk);
+         }
+      }
+
+      for (Map.Entry<String, List<Integer>> entry : ids.entrySet()) {
+         if (failed.contains(entry.getKey()))
+            continue;
+         String path = found.get(entry.getKey());
+         if (path == null)
+            path = UNRESOLVED;
+         for (int index : entry.getValue()) {
+            paths[index] = path;
+            cache.put(uris.get(index), path);
+         }
+      }
+   }
+
+   /**
+    * Registers the observer once per provider
+    */
+   private void observe(@NonNull Uri uri) {
+      String authority = uri.getAuthority();
+      if (authority == null || !observedAuthorities.add(authority))
+         return;
+
+      try {
+         context.getContentResolver()
+                .registerContentObserver(new Uri.Builder().scheme("content").authority(authority).build(),
+                                         true, observer);
+      } catch (SecurityException e) {
+         //some providers refuse observers, their Uris are still cached until invalidate()
+         Timber.w(e, "Could not observe %s", authority);
+      }
+   }
+
+   private static boolean isDigits(@Nullable String value) {
+      if (value == null || value.isEmpty())
+         return false;
+      for (int i = 0; i < value.length(); i++) {
+         char c = value.charAt(i);
+         if (c < '0' || c > '9')
+            return false;
+      }
+      return true;
+   }
+}
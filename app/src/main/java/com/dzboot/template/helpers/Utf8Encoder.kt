@@ -0,0 +1,171 @@
+package com.dzboot.template.helpers
+
+import java.nio.BufferOverflowException
+import java.nio.ByteBuffer
+
+
+/**
+ * Allocation free UTF-8 encoding into caller supplied or per-thread pooled [ByteBuffer]s.
+ * Unpaired surrogates are encoded as '?' like [String.toByteArray] does, so lengths always match it.
+ */
+@Suppress("unused", "MemberVisibilityCanBePrivate")
+object Utf8Encoder {
+
+   //'?'
+   private const val REPLACEMENT: Byte = 0x3F
+   private const val INITIAL_POOL_SIZE = 1024
+
+   private val pool = object : ThreadLocal<ByteBuffer>() {
+      override fun initialValue(): ByteBuffer = ByteBuffer.allocate(INITIAL_POOL_SIZE)
+   }
+
+   /**
+    * Computes the UTF-8 length of the text without encoding it
+    *
+    * @param text the text
+    * @return the number of bytes [encode] will write
+    */
+   fun encodedLength(text: CharSequence): Int {
+      var length = 0
+      var i = 0
+      val size = text.length
+      while (i < size) {
+         val ch = text[i]
+         length += when {
+            ch.code < 0x80 -> 1
+            ch.code < 0x800 -> 2
+            Character.isHighSurrogate(ch) && i + 1 < size && Character.isLowSurrogate(text[i + 1]) -> {
+               i++
+               4
+            }
+            Character.isSurrogate(ch) -> 1
+            else -> 3
+         }
+         i++
+      }
+      return length
+   }
+
+   /**
+    * Encodes the text into the buffer, starting at its position
+    *
+    * @param text the text
+    * @param out  where to write, its position moves past the written bytes
+    * @return the number of bytes written
+    * @throws BufferOverflowException if the buffer does not have [encodedLength] bytes remaining,
+    * nothing is written in that case
+    */
+   fun encode(text: CharSequence, out: ByteBuffer): Int {
+      if (out.remaining() < text.length * 3 && out.remaining() < encodedLength(text))
+         throw BufferOverflowException()
+
+      val start = out.position()
+      val end = encodeRange(text, 0, text.length, out)
+      check(end == text.length)
+      return out.position() - start
+   }
+
+   /**
+    * Encodes the text into this thread's pooled buffer, grown when needed.
+    * The buffer is only valid until the next call to this method on the same thread
+    *
+    * @param text the text
+    * @return the pooled buffer, flipped and ready to be read
+    */
+   fun encodePooled(text: CharSequence): ByteBuffer {
+      var buffer = pool.get()!!
+      val length = if (text.length * 3 <= buffer.capacity()) -1 else encodedLength(text)
+      if (length > buffer.capacity()) {
+         buffer = ByteBuffer.allocate(Integer.highestOneBit(length - 1) shl 1)
+         pool.set(buffer)
+      }
+
+      buffer.clear()
+      encode(text, buffer)
+      buffer.flip()
+      return buffer
+   }
+
+   /**
+    * Encodes chars from start until the end or until the next char does not fit the buffer.
+    * A surrogate pair is never split
+    *
+    * @return the index of the first char not encoded
+    */
+   private fun encodeRange(text: CharSequence, start: Int, end: Int, out: ByteBuffer): Int {
+      var i = start
+      while (i < end) {
+         val ch = text[i]
+         val code = ch.code
+         when {
+            code < 0x80 -> {
+               if (!out.hasRemaining()) return i
+               out.put(code.toByte())
+            }
+            code < 0x800 -> {
+               if (out.remaining() < 2) return i
+               out.put((0xC0 or (code shr 6)).toByte())
+               out.put((0x80 or (code and 0x3F)).toByte())
+            }
+            Character.isHighSurrogate(ch) && i + 1 < end && Character.isLowSurrogate(text[i + 1]) -> {
+               if (out.remaining() < 4) return i
+               val codePoint = Character.toCodePoint(ch, text[i + 1])
+               out.put((0xF0 or (codePoint shr 18)).toByte())
+               out.put((0x80 or ((codePoint shr 12) and 0x3F)).toByte())
+               out.put((0x80 or ((codePoint shr 6) and 0x3F)).toByte())
+               out.put((0x80 or (codePoint and 0x3F)).toByte())
+               i++
+            }
+            Character.isSurrogate(ch) -> {
+               if (!out.hasRemaining()) return i
+               out.put(REPLACEMENT)
+            }
+            else -> {
+               if (out.remaining() < 3) return i
+               out.put((0xE0 or (code shr 12)).toByte())
+               out.put((0x80 or ((code shr 6) and 0x3F)).toByte())
+               out.put((0x80 or (code and 0x3F)).toByte())
+            }
+         }
+         i++
+      }
+      return i
+   }
+
+
+   /**
+    * Encodes a large text chunk by chunk into buffers of any size, for example to stream it to a channel
+    * without materializing the whole byte array
+    *
+    * ```
+    * val encoder = Utf8Encoder.Incremental(text)
+    * while (!encoder.isDone) {
+    *    buffer.clear()
+    *    encoder.encodeNext(buffer)
+    *    buffer.flip()
+    *    channel.write(buffer)
+    * }
+    * ```
+    */
+   class Incremental(private val text: CharSequence) {
+
+      private var position = 0
+
+      val isDone: Boolean
+         get() = position >= text.length
+
+      /**
+       * Encodes as many chars as fit in the buffer
+       *
+       * @param out where to write, its position moves past the written bytes
+       * @return the number of bytes written
+       * @throws IllegalArgumentException if the buffer cannot hold the next char, 4 bytes are always enough
+       */
+      fun encodeNext(out: ByteBuffer): Int {
+         val start = out.position()
+         position = encodeRange(text, position, text.length, out)
+         require(out.position() > start || isDone) { "Buffer too small for the next char" }
+         return out.position() - start
+      }
+   }
+}
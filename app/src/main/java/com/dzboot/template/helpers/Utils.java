@@ -1,6 +1,7 @@
 package com.dzboot.template.helpers;
 
 import android.annotation.SuppressLint;
+import android.content.ContentResolver;
 import android.content.Context;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
@@ -11,7 +12,6 @@ import android.graphics.Bitmap;
 import android.location.LocationManager;
 import android.net.Uri;
 import android.os.Environment;
-import android.provider.MediaStore;
 import android.text.Editable;
 import android.text.Selection;
 import android.text.Spannable;
@@ -28,7 +28,9 @@ import android.widget.TextView;
 
 import androidx.annotation.ColorRes;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.StringRes;
+import androidx.annotation.WorkerThread;
 import androidx.appcompat.app.AppCompatActivity;
 
 import org.jetbrains.annotations.NotNull;
@@ -104,16 +106,22 @@ public class Utils {
       return Base64.encodeToString(imageBytes, Base64.DEFAULT);
    }
 
-   public static String getRealPathFromURI(@NonNull Context context, Uri contentURI) {
-      Cursor cursor = context.getContentResolver().query(contentURI, null, null, null, null);
-      if (cursor == null) { // Source is Dropbox or other similar local file path
-         return contentURI.getPath();
-      } else {
-         cursor.moveToFirst();
-         int idx = cursor.getColumnIndex(MediaStore.Images.ImageColumns.DATA);
-         String result = cursor.getString(idx);
-         cursor.close();
-         return result;
+   /**
+    * @param context    non-null context
+    * @param contentURI the Uri to resolve
+    * @return the file path, null if it has none, see {@link UriPathResolver}. The Uri path for providers which
+    * answer no query, such as Dropbox
+    */
+   @Nullable
+   @WorkerThread
+   public static String getRealPathFromURI(@NonNull Context context, @NonNull Uri contentURI) {
+      String path = UriPathResolver.get(context).resolve(contentURI);
+      if (path != null || !ContentResolver.SCHEME_CONTENT.equals(contentURI.getScheme()))
+         return path;
+
+      try (Cursor cursor = context.getContentResolver().query(contentURI, null, null, null, null)) {
+         // Source is Dropbox or other similar local file path
+         return cursor == null ? contentURI.getPath() : null;
       }
    }
 
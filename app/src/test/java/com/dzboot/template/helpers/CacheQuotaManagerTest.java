@@ -0,0 +1,167 @@
+package com.dzboot.template.helpers;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class CacheQuotaManagerTest {
+
+   private static final long TIMEOUT_MS = 5000;
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private File directory;
+   private File journal;
+
+
+   @Before
+   public void setUp() throws IOException {
+      directory = folder.newFolder("cache");
+      journal = new File(folder.getRoot(), "cache_quota.journal");
+   }
+
+   private File write(String name, int size) throws IOException {
+      File file = new File(directory, name);
+      File parent = file.getParentFile();
+      if (!parent.isDirectory())
+         assertTrue(parent.mkdirs());
+      try (FileOutputStream out = new FileOutputStream(file)) {
+         out.write(new byte[size]);
+      }
+      return file;
+   }
+
+   /**
+    * Sweeps run on the manager's thread, wait for their outcome
+    */
+   private static void waitFor(String what, BooleanSupplier condition) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+      while (!condition.getAsBoolean()) {
+         if (System.currentTimeMillis() > deadline)
+            fail("Timed out waiting for " + what);
+         Thread.sleep(10);
+      }
+   }
+
+   @Test
+   public void writesAndDeletesAreAccounted() throws IOException {
+      CacheQuotaManager manager = new CacheQuotaManager(directory, journal, 1000);
+      File file = write("a", 100);
+      manager.recordWrite(file);
+      assertEquals(100, manager.getTotalBytes());
+
+      //a replaced file counts with its new size only
+      write("a", 40);
+      manager.recordWrite(file);
+      assertEquals(40, manager.getTotalBytes());
+
+      manager.recordAccess(new File(directory, "unknown"));
+      assertEquals(40, manager.getTotalBytes());
+
+      manager.recordDelete(file);
+      assertEquals(0, manager.getTotalBytes());
+      manager.stop();
+   }
+
+   @Test
+   public void evictsTheLeastRecentlyUsedFirst() throws Exception {
+      CacheQuotaManager manager = new CacheQuotaManager(directory, journal, 1000);
+      File a = write("a", 100);
+      File b = write("b", 100);
+      File c = write("c", 100);
+      manager.recordWrite(a);
+      manager.recordWrite(b);
+      manager.recordWrite(c);
+      manager.recordAccess(a);
+
+      manager.setMaxBytes(250);
+      waitFor("the eviction", () -> !b.exists());
+      assertTrue(a.exists());
+      assertTrue(c.exists());
+      assertEquals(200, manager.getTotalBytes());
+      manager.stop();
+   }
+
+   @Test
+   public void unreportedFilesArePickedUp() throws Exception {
+      //unreported files are ordered by modification time
+      File nested = write("nested/d", 500);
+      assertTrue(nested.setLastModified(System.currentTimeMillis() - 60000));
+      File small = write("e", 50);
+      CacheQuotaManager manager = new CacheQuotaManager(directory, journal, 100);
+      manager.requestSweep();
+      waitFor("the eviction", () -> !nested.exists());
+      assertTrue(small.exists());
+      assertEquals(50, manager.getTotalBytes());
+      manager.stop();
+   }
+
+   @Test
+   public void accessOrderSurvivesRestarts() throws Exception {
+      CacheQuotaManager first = new CacheQuotaManager(directory, journal, 1000);
+      File a = write("a", 100);
+      File b = write("b", 100);
+      first.recordWrite(a);
+      first.recordWrite(b);
+      first.recordAccess(a);
+      first.stop();
+      waitFor("the journal", journal::isFile);
+
+      CacheQuotaManager second = new CacheQuotaManager(directory, journal, 150);
+      second.requestSweep();
+      waitFor("the eviction", () -> !b.exists());
+      assertTrue(a.exists());
+      second.stop();
+   }
+
+   @Test
+   public void linksAreNotFollowed() throws Exception {
+      File outside = folder.newFolder("outside");
+      File foreign = new File(outside, "f");
+      try (FileOutputStream out = new FileOutputStream(foreign)) {
+         out.write(new byte[500]);
+      }
+      Files.createSymbolicLink(new File(directory, "out").toPath(), outside.toPath());
+      Files.createSymbolicLink(new File(directory, "loop").toPath(), directory.toPath());
+      File own = write("a", 100);
+      own.setLastModified(System.currentTimeMillis() - 60000);
+      File recent = write("b", 60);
+
+      CacheQuotaManager manager = new CacheQuotaManager(directory, journal, 100);
+      manager.requestSweep();
+      waitFor("the eviction", () -> !own.exists());
+      assertTrue(recent.exists());
+      assertTrue(foreign.exists());
+      assertEquals(60, manager.getTotalBytes());
+      manager.stop();
+   }
+
+   @Test
+   public void filesDeletedBehindItsBackAreForgotten() throws Exception {
+      CacheQuotaManager manager = new CacheQuotaManager(directory, journal, 150);
+      File a = write("a", 100);
+      File b = write("b", 100);
+      manager.recordWrite(a);
+      assertTrue(a.delete());
+      manager.recordWrite(b);
+      //the full scan drops a, which brings the total under budget without evicting b
+      waitFor("the sweep", () -> manager.getTotalBytes() == 100);
+      assertTrue(b.exists());
+      assertFalse(a.exists());
+      manager.stop();
+   }
+}
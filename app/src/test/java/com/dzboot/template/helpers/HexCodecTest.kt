@@ -0,0 +1,135 @@
+package com.dzboot.template.helpers
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertThrows
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.StringWriter
+import java.nio.BufferOverflowException
+import java.nio.ByteBuffer
+import java.util.Random
+
+
+class HexCodecTest {
+
+   private val allBytes = ByteArray(256) { it.toByte() }
+
+   private fun expected(bytes: ByteArray, upperCase: Boolean = true) =
+      bytes.joinToString("") { String.format(if (upperCase) "%02X" else "%02x", it) }
+
+   private fun randomBytes(size: Int) = ByteArray(size).also { Random(size.toLong()).nextBytes(it) }
+
+   @Test
+   fun encodesEveryByteValue() {
+      assertEquals(expected(allBytes), HexCodec.encode(allBytes))
+      assertEquals(expected(allBytes, false), HexCodec.encode(allBytes, upperCase = false))
+   }
+
+   @Test
+   fun encodesARange() {
+      assertEquals("0102", HexCodec.encode(allBytes, 1, 2))
+      assertEquals("", HexCodec.encode(allBytes, 256, 0))
+   }
+
+   @Test
+   fun rejectsRangesOutsideTheArray() {
+      assertThrows(IndexOutOfBoundsException::class.java) { HexCodec.encode(allBytes, -1, 2) }
+      assertThrows(IndexOutOfBoundsException::class.java) { HexCodec.encode(allBytes, 255, 2) }
+      assertThrows(IndexOutOfBoundsException::class.java) { HexCodec.encode(allBytes, 0, -1) }
+      assertThrows(IndexOutOfBoundsException::class.java) {
+         HexCodec.encodeInto(allBytes, 0, 4, CharArray(7), 0)
+      }
+   }
+
+   @Test
+   fun inputsLargerThanTheScratchBuffer() {
+      val bytes = randomBytes(1000)
+      val large = HexCodec.encode(bytes)
+      //the scratch buffer is reused by the next call, the first result must not change
+      val small = HexCodec.encode(allBytes, 0, 4)
+      assertEquals(expected(bytes), large)
+      assertEquals("00010203", small)
+   }
+
+   @Test
+   fun byteBuffersKeepTheirPosition() {
+      val heap = ByteBuffer.wrap(allBytes, 10, 3).slice()
+      assertEquals("0A0B0C", HexCodec.encode(heap))
+      assertEquals(0, heap.position())
+
+      val direct = ByteBuffer.allocateDirect(4).put(byteArrayOf(1, -1, 16, 0))
+      direct.position(1)
+      assertEquals("ff1000", HexCodec.encode(direct, false))
+      assertEquals(1, direct.position())
+   }
+
+   @Test
+   fun encodeIntoAndTo() {
+      val out = CharArray(8) { '-' }
+      assertEquals(4, HexCodec.encodeInto(allBytes, 254, 2, out, 2))
+      assertEquals("--FEFF--", String(out))
+
+      val builder = HexCodec.encodeTo(allBytes, 9, 2, StringBuilder(">"), false)
+      assertEquals(">090a", builder.toString())
+   }
+
+   @Test
+   fun decodesBothCases() {
+      assertArrayEquals(byteArrayOf(-85, -51, 1), HexCodec.decode("abCD01"))
+      assertArrayEquals(allBytes, HexCodec.decode(expected(allBytes, false)))
+      assertArrayEquals(ByteArray(0), HexCodec.decode(""))
+   }
+
+   @Test
+   fun rejectsInvalidHex() {
+      assertThrows(IllegalArgumentException::class.java) { HexCodec.decode("abc") }
+      assertThrows(IllegalArgumentException::class.java) { HexCodec.decode("0g") }
+      assertThrows(IllegalArgumentException::class.java) { HexCodec.decode("0 ") }
+      //fullwidth and Arabic-Indic digits are digits but not hex
+      assertThrows(IllegalArgumentException::class.java) { HexCodec.decode("０１") }
+      assertThrows(IllegalArgumentException::class.java) { HexCodec.decode("٠١") }
+   }
+
+   @Test
+   fun decodeInto() {
+      val buffer = ByteBuffer.allocate(4)
+      buffer.put(9)
+      HexCodec.decodeInto("0102", buffer)
+      assertEquals(3, buffer.position())
+      assertArrayEquals(byteArrayOf(9, 1, 2, 0), buffer.array())
+      assertThrows(BufferOverflowException::class.java) { HexCodec.decodeInto("0102", buffer) }
+   }
+
+   @Test
+   fun roundTrips() {
+      for (size in intArrayOf(0, 1, 511, 512, 513, 4096)) {
+         val bytes = randomBytes(size)
+         assertArrayEquals(bytes, HexCodec.decode(HexCodec.encode(bytes)))
+      }
+   }
+
+   @Test
+   fun streamMatchesEncode() {
+      val bytes = randomBytes(5000)
+      val writer = StringWriter()
+      HexCodec.EncodingOutputStream(writer).use { stream ->
+         stream.write(bytes[0].toInt())
+         //crosses the 4096 chars buffer several times
+         stream.write(bytes, 1, 4000)
+         for (i in 4001 until bytes.size)
+            stream.write(bytes[i].toInt())
+      }
+      assertEquals(expected(bytes), writer.toString())
+   }
+
+   @Test
+   fun streamFlushesOnFlush() {
+      val writer = StringWriter()
+      val stream = HexCodec.EncodingOutputStream(writer, false)
+      stream.write(byteArrayOf(-1, 0))
+      assertTrue(writer.toString().isEmpty())
+      stream.flush()
+      assertEquals("ff00", writer.toString())
+   }
+}
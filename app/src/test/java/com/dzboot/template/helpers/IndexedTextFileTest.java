@@ -0,0 +1,138 @@
+package com.dzboot.template.helpers;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+
+public class IndexedTextFileTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+
+   private File write(String name, String content) throws IOException {
+      File file = new File(folder.getRoot(), name);
+      write(file, content, false);
+      return file;
+   }
+
+   private static void write(File file, String content, boolean append) throws IOException {
+      try (FileOutputStream out = new FileOutputStream(file, append)) {
+         out.write(content.getBytes("UTF-8"));
+      }
+   }
+
+   private static List<String> allLines(File file) throws IOException {
+      try (IndexedTextFile indexed = IndexedTextFile.open(file)) {
+         return indexed.getLines(0, Integer.MAX_VALUE);
+      }
+   }
+
+   @Test
+   public void emptyFileHasNoLines() throws IOException {
+      File file = write("empty.txt", "");
+      try (IndexedTextFile indexed = IndexedTextFile.open(file)) {
+         assertEquals(0, indexed.getLineCount());
+         assertTrue(indexed.getLines(0, 5).isEmpty());
+      }
+   }
+
+   @Test
+   public void lastLineWithoutBreakCounts() throws IOException {
+      assertEquals(Arrays.asList("a", "b"), allLines(write("a.txt", "a\nb")));
+      assertEquals(Collections.singletonList("a"), allLines(write("b.txt", "a\n")));
+      assertEquals(Collections.singletonList(""), allLines(write("c.txt", "\n")));
+      assertEquals(Arrays.asList("", ""), allLines(write("d.txt", "\n\n")));
+   }
+
+   @Test
+   public void lineBreaksAndByteOrderMarkAreDropped() throws IOException {
+      assertEquals(Arrays.asList("first", "", "third"), allLines(write("crlf.txt", "first\r\n\r\nthird\r\n")));
+      assertEquals(Arrays.asList("first", "second"), allLines(write("bom.txt", "\uFEFFfirst\nsecond")));
+      assertEquals(Collections.emptyList(), allLines(write("bom-only.txt", "\uFEFF")));
+   }
+
+   @Test
+   public void multiByteLines() throws IOException {
+      assertEquals(Arrays.asList("é😀", "ह", "٣"), allLines(write("utf8.txt", "é😀\nह\n٣")));
+   }
+
+   @Test
+   public void rangesAreClampedToTheEnd() throws IOException {
+      try (IndexedTextFile indexed = IndexedTextFile.open(write("range.txt", "0\n1\n2\n3\n"))) {
+         assertEquals(Arrays.asList("1", "2"), indexed.getLines(1, 2));
+         assertEquals(Collections.singletonList("3"), indexed.getLines(3, 10));
+         assertTrue(indexed.getLines(4, 1).isEmpty());
+         assertTrue(indexed.getLines(1, 0).isEmpty());
+         assertThrows(IndexOutOfBoundsException.class, () -> indexed.getLines(-1, 1));
+         assertThrows(IndexOutOfBoundsException.class, () -> indexed.getLines(0, -1));
+      }
+   }
+
+   @Test
+   public void refreshIndexesAppendedLines() throws IOException {
+      File file = write("log.txt", "one\ntw");
+      try (IndexedTextFile indexed = IndexedTextFile.open(file)) {
+         assertEquals(2, indexed.getLineCount());
+         assertFalse(indexed.refresh());
+
+         write(file, "o\nthree\n", true);
+         assertTrue(indexed.refresh());
+         assertEquals(Arrays.asList("one", "two", "three"), indexed.getLines(0, 10));
+      }
+   }
+
+   @Test
+   public void sidecarIsReusedAcrossOpens() throws IOException {
+      File file = write("reopen.txt", "one\ntwo\n");
+      assertEquals(Arrays.asList("one", "two"), allLines(file));
+      assertTrue(new File(file.getPath() + ".lineidx").isFile());
+
+      write(file, "three\n", true);
+      assertEquals(Arrays.asList("one", "two", "three"), allLines(file));
+   }
+
+   @Test
+   public void rewrittenFilesAreIndexedAgain() throws IOException {
+      File file = write("rewrite.txt", "aa\nbb\n");
+      assertEquals(Arrays.asList("aa", "bb"), allLines(file));
+
+      //same length, different content
+      write(file, "a\nb\ncc", false);
+      assertEquals(Arrays.asList("a", "b", "cc"), allLines(file));
+
+      write(file, "x", false);
+      assertEquals(Collections.singletonList("x"), allLines(file));
+   }
+
+   @Test
+   public void brokenSidecarOnlyCostsAScan() throws IOException {
+      File file = write("broken.txt", "one\ntwo\n");
+      write(new File(file.getPath() + ".lineidx"), "not an index", false);
+      assertEquals(Arrays.asList("one", "two"), allLines(file));
+   }
+
+   @Test
+   public void sidecarCanLiveElsewhere() throws IOException {
+      File file = write("elsewhere.txt", "one\n");
+      File sidecar = new File(folder.newFolder("index"), "elsewhere.idx");
+      try (IndexedTextFile indexed = IndexedTextFile.open(file, sidecar)) {
+         assertEquals(1, indexed.getLineCount());
+      }
+      assertTrue(sidecar.isFile());
+      assertFalse(new File(file.getPath() + ".lineidx").exists());
+   }
+}
@@ -0,0 +1,136 @@
+package com.dzboot.template.helpers;
+
+import org.junit.Test;
+
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+
+public class NativeNumberFormatTest {
+
+   private static final Locale[] LOCALES = {Locale.US, Locale.FRANCE, Locale.GERMANY,
+                                            Locale.forLanguageTag("th-TH-u-nu-thai")};
+   private static final long[] VALUES = {0, 7, -7, 999, 1000, -1000, 123456, -1234567890123L,
+                                         Long.MAX_VALUE, Long.MIN_VALUE};
+
+   private final NativeNumberFormat us = NativeNumberFormat.getInstance(Locale.US);
+
+
+   private static String format(NativeNumberFormat format, double value, int fractionDigits) {
+      return format.format(value, fractionDigits, true, new StringBuilder()).toString();
+   }
+
+   private static String formatBytes(NativeNumberFormat format, long bytes, int fractionDigits) {
+      return format.formatBytes(bytes, fractionDigits, new StringBuilder()).toString();
+   }
+
+   @Test
+   public void integersMatchNumberFormat() {
+      for (Locale locale : LOCALES) {
+         NativeNumberFormat format = NativeNumberFormat.getInstance(locale);
+         NumberFormat grouped = NumberFormat.getInstance(locale);
+         NumberFormat plain = NumberFormat.getInstance(locale);
+         plain.setGroupingUsed(false);
+         for (long value : VALUES) {
+            assertEquals(locale + " " + value, grouped.format(value),
+                         format.format(value, true, new StringBuilder()).toString());
+            assertEquals(locale + " " + value, plain.format(value),
+                         format.format(value, false, new StringBuilder()).toString());
+         }
+      }
+   }
+
+   @Test
+   public void charArrayMatchesTheBuilder() {
+      for (Locale locale : LOCALES) {
+         NativeNumberFormat format = NativeNumberFormat.getInstance(locale);
+         for (long value : VALUES) {
+            char[] out = new char[2 + 28];
+            int length = format.format(value, true, out, 2);
+            assertEquals(format.format(value, true, new StringBuilder()).toString(), new String(out, 2, length));
+         }
+      }
+   }
+
+   @Test
+   public void secondaryGroupingIsReadFromThePattern() {
+      assertEquals(2, NativeNumberFormat.secondaryGroupingSize("#,##,##0.###", 3));
+      assertEquals(2, NativeNumberFormat.secondaryGroupingSize("#,##,##0", 3));
+      assertEquals(3, NativeNumberFormat.secondaryGroupingSize("#,##0.###", 3));
+      assertEquals(4, NativeNumberFormat.secondaryGroupingSize("#,####,##0;(#,####,##0)", 3));
+      //commas of the negative subpattern and the fraction are not grouping
+      assertEquals(3, NativeNumberFormat.secondaryGroupingSize("#,##0;#,##,##0", 3));
+      assertEquals(3, NativeNumberFormat.secondaryGroupingSize("0.00", 3));
+   }
+
+   @Test
+   public void decimalsRoundHalfUp() {
+      assertEquals("0.13", format(us, 0.125, 2));
+      assertEquals("3", format(us, 2.5, 0));
+      assertEquals("-3", format(us, -2.5, 0));
+      assertEquals("1,234.50", format(us, 1234.5, 2));
+   }
+
+   @Test
+   public void negativeValuesRoundingToZeroHaveNoSign() {
+      assertEquals("0.00", format(us, -0.001, 2));
+   }
+
+   @Test
+   public void nonFiniteValuesUseTheLocaleSymbols() {
+      DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(Locale.US);
+      assertEquals(symbols.getNaN(), format(us, Double.NaN, 2));
+      assertEquals(symbols.getInfinity(), format(us, Double.POSITIVE_INFINITY, 2));
+      assertEquals(symbols.getMinusSign() + symbols.getInfinity(), format(us, Double.NEGATIVE_INFINITY, 2));
+   }
+
+   @Test
+   public void valuesTooLargeForALongStillFormat() {
+      assertEquals("100,000,000,000,000,000,000.00", format(us, 1e20, 2));
+      assertEquals("-100,000,000,000,000,000,000.00", format(us, -1e20, 2));
+   }
+
+   @Test
+   public void fractionDigitsAreValidated() {
+      assertThrows(IllegalArgumentException.class, () -> format(us, 1, -1));
+      assertThrows(IllegalArgumentException.class, () -> format(us, 1, 19));
+      assertThrows(IllegalArgumentException.class, () -> formatBytes(us, 1, -1));
+      assertThrows(IllegalArgumentException.class, () -> formatBytes(us, 1, 19));
+   }
+
+   @Test
+   public void bytes() {
+      assertEquals("0 B", formatBytes(us, 0, 1));
+      assertEquals("1,023 B", formatBytes(us, 1023, 1));
+      assertEquals("1.0 KB", formatBytes(us, 1024, 1));
+      assertEquals("1.5 KB", formatBytes(us, 1536, 1));
+      assertEquals("-1.5 KB", formatBytes(us, -1536, 1));
+      assertEquals("1 KB", formatBytes(us, 1535, 0));
+      assertEquals("8.0 EB", formatBytes(us, Long.MAX_VALUE, 1));
+      assertEquals("-9,223,372,036,854,775,808 B", formatBytes(us, Long.MIN_VALUE, 1));
+   }
+
+   @Test
+   public void bytesRoundingUpToTheNextUnitShowThatUnit() {
+      assertEquals("1.0 MB", formatBytes(us, 1048575, 1));
+      assertEquals("1 MB", formatBytes(us, 1048575, 0));
+      assertEquals("1,023.9 KB", formatBytes(us, 1048524, 1));
+   }
+
+   @Test
+   public void nativeDigits() {
+      NativeNumberFormat thai = NativeNumberFormat.getInstance(Locale.forLanguageTag("th-TH-u-nu-thai"));
+      assertEquals('๐', thai.getZeroDigit());
+      assertEquals("๑.๕ KB", formatBytes(thai, 1536, 1));
+   }
+
+   @Test
+   public void instancesAreCached() {
+      assertSame(us, NativeNumberFormat.getInstance(Locale.US));
+   }
+}
@@ -0,0 +1,115 @@
+package com.dzboot.template.helpers;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+
+public class NumeralTransliteratorTest {
+
+   //MATHEMATICAL BOLD DIGIT ONE, a decimal digit outside the BMP
+   private static final String BOLD_ONE = new String(Character.toChars(0x1D7CF));
+
+
+   @Test
+   public void digitValues() {
+      assertEquals(3, NumeralTransliterator.digitValue('٣'));
+      assertEquals(7, NumeralTransliterator.digitValue('७'));
+      assertEquals(9, NumeralTransliterator.digitValue('９'));
+      assertEquals(-1, NumeralTransliterator.digitValue('a'));
+      assertEquals(-1, NumeralTransliterator.digitValue('½'));
+      assertEquals(1, NumeralTransliterator.digitValue(0x1D7CF));
+      assertEquals(-1, NumeralTransliterator.digitValue(0x1F600));
+   }
+
+   @Test
+   public void convertsEveryScript() {
+      assertEquals("0123 456 789", NumeralTransliterator.transliterate("٠١٢٣ ۴۵۶ ७८९", NumeralTransliterator.LATIN));
+      assertEquals("١٢ ab ٣", NumeralTransliterator.transliterate("12 ab ३", NumeralTransliterator.ARABIC_INDIC));
+   }
+
+   @Test
+   public void returnsTheSameStringWhenNothingChanges() {
+      String text = "no digits, 123 already latin";
+      assertSame(text, NumeralTransliterator.transliterate(text, NumeralTransliterator.LATIN));
+   }
+
+   @Test
+   public void supplementaryDigitsShrinkToOneChar() {
+      assertEquals("a1b", NumeralTransliterator.transliterate("a" + BOLD_ONE + "b", NumeralTransliterator.LATIN));
+
+      char[] chars = ("x" + BOLD_ONE + BOLD_ONE + "y").toCharArray();
+      int length = NumeralTransliterator.transliterate(chars, 1, chars.length - 1, NumeralTransliterator.LATIN);
+      assertEquals(3, length);
+      assertEquals("x11y", new String(chars, 0, 1 + length));
+   }
+
+   @Test
+   public void unpairedSurrogatesAreKept() {
+      String text = "\ud800 ٣ \udc00";
+      assertEquals("\ud800 3 \udc00", NumeralTransliterator.transliterate(text, NumeralTransliterator.LATIN));
+
+      StringBuilder sb = new StringBuilder(text);
+      NumeralTransliterator.transliterate(sb, NumeralTransliterator.LATIN);
+      assertEquals("\ud800 3 \udc00", sb.toString());
+   }
+
+   @Test
+   public void builderIsConvertedInPlace() {
+      StringBuilder sb = new StringBuilder("٤" + BOLD_ONE + "😀٥");
+      NumeralTransliterator.transliterate(sb, NumeralTransliterator.LATIN);
+      assertEquals("41😀5", sb.toString());
+   }
+
+   @Test
+   public void appendable() throws IOException {
+      StringBuilder out = new StringBuilder(">");
+      NumeralTransliterator.transliterate("۱" + BOLD_ONE + "x", NumeralTransliterator.THAI, out);
+      assertEquals(">๑๑x", out.toString());
+   }
+
+   @Test
+   public void charBufferKeepsASplitSurrogateForTheNextCall() {
+      String first = "٢" + BOLD_ONE.charAt(0);
+      CharBuffer in = CharBuffer.wrap(first);
+      CharBuffer out = CharBuffer.allocate(8);
+      NumeralTransliterator.transliterate(in, out, NumeralTransliterator.LATIN, false);
+      assertEquals(1, in.position());
+      assertEquals(1, out.position());
+
+      CharBuffer rest = CharBuffer.wrap(first.substring(in.position()) + BOLD_ONE.charAt(1));
+      NumeralTransliterator.transliterate(rest, out, NumeralTransliterator.LATIN, true);
+      out.flip();
+      assertEquals("21", out.toString());
+   }
+
+   @Test
+   public void charBufferWritesALoneSurrogateAtTheEndOfInput() {
+      CharBuffer in = CharBuffer.wrap("٢\ud835");
+      CharBuffer out = CharBuffer.allocate(8);
+      NumeralTransliterator.transliterate(in, out, NumeralTransliterator.LATIN, true);
+      out.flip();
+      assertEquals("2\ud835", out.toString());
+   }
+
+   @Test
+   public void charBufferStopsWhenTheOutputIsFull() {
+      CharBuffer in = CharBuffer.wrap("٠١٢");
+      CharBuffer out = CharBuffer.allocate(2);
+      NumeralTransliterator.transliterate(in, out, NumeralTransliterator.LATIN, true);
+      assertEquals(2, in.position());
+      out.flip();
+      assertEquals("01", out.toString());
+   }
+
+   @Test
+   public void rejectsTargetsWhichAreNotZeroDigits() {
+      assertThrows(IllegalArgumentException.class, () -> NumeralTransliterator.transliterate("1", 'A'));
+      assertThrows(IllegalArgumentException.class, () -> NumeralTransliterator.transliterate("1", '1'));
+   }
+}
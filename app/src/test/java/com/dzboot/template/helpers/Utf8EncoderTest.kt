@@ -0,0 +1,105 @@
+package com.dzboot.template.helpers
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertThrows
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.ByteArrayOutputStream
+import java.nio.BufferOverflowException
+import java.nio.ByteBuffer
+
+
+class Utf8EncoderTest {
+
+   private val texts = listOf(
+      "",
+      "ascii only",
+      "é ß ü ÿ",
+      "ह ส € ￿",
+      "emoji 😀 and 𝟏",
+      //unpaired surrogates, at the end, alone and in the wrong order
+      "end \ud83d",
+      "\ude00 start",
+      "\ude00\ud83d",
+      "a\ud83d😀b"
+   )
+
+   private fun ByteBuffer.bytes(): ByteArray = ByteArray(remaining()).also { get(it) }
+
+   @Test
+   fun lengthMatchesToByteArray() {
+      for (text in texts)
+         assertEquals(text, text.toByteArray().size, Utf8Encoder.encodedLength(text))
+   }
+
+   @Test
+   fun bytesMatchToByteArray() {
+      for (text in texts) {
+         val buffer = ByteBuffer.allocate(Utf8Encoder.encodedLength(text))
+         assertEquals(buffer.capacity(), Utf8Encoder.encode(text, buffer))
+         assertArrayEquals(text, text.toByteArray(), buffer.array())
+      }
+   }
+
+   @Test
+   fun encodesAtThePosition() {
+      val buffer = ByteBuffer.allocate(8)
+      buffer.put(1)
+      assertEquals(2, Utf8Encoder.encode("é", buffer))
+      assertEquals(3, buffer.position())
+   }
+
+   @Test
+   fun tooSmallBuffersAreLeftUntouched() {
+      val buffer = ByteBuffer.allocate(4)
+      assertThrows(BufferOverflowException::class.java) { Utf8Encoder.encode("ab😀", buffer) }
+      assertEquals(0, buffer.position())
+      assertArrayEquals(ByteArray(4), buffer.array())
+   }
+
+   @Test
+   fun pooledBufferIsFlippedAndGrows() {
+      val small = Utf8Encoder.encodePooled("héllo")
+      assertArrayEquals("héllo".toByteArray(), small.bytes())
+      assertSame(small, Utf8Encoder.encodePooled("x"))
+
+      val text = "€".repeat(1000)
+      val large = Utf8Encoder.encodePooled(text)
+      assertNotSame(small, large)
+      assertArrayEquals(text.toByteArray(), large.bytes())
+   }
+
+   @Test
+   fun incrementalNeverSplitsASurrogatePair() {
+      for (text in texts) {
+         val encoder = Utf8Encoder.Incremental(text)
+         val out = ByteArrayOutputStream()
+         val buffer = ByteBuffer.allocate(4)
+         while (!encoder.isDone) {
+            buffer.clear()
+            encoder.encodeNext(buffer)
+            buffer.flip()
+            out.write(buffer.array(), 0, buffer.limit())
+         }
+         assertArrayEquals(text, text.toByteArray(), out.toByteArray())
+      }
+   }
+
+   @Test
+   fun incrementalRejectsBuffersTooSmallForTheNextChar() {
+      val encoder = Utf8Encoder.Incremental("😀")
+      assertThrows(IllegalArgumentException::class.java) { encoder.encodeNext(ByteBuffer.allocate(3)) }
+      assertEquals(4, encoder.encodeNext(ByteBuffer.allocate(4)))
+      assertTrue(encoder.isDone)
+   }
+
+   @Test
+   fun incrementalOnEmptyTextIsDone() {
+      val encoder = Utf8Encoder.Incremental("")
+      assertTrue(encoder.isDone)
+      assertEquals(0, encoder.encodeNext(ByteBuffer.allocate(0)))
+   }
+}
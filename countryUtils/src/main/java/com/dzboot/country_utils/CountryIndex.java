@@ -0,0 +1,122 @@
+package com.dzboot.country_utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Locale;
+
+
+/**
+ * Immutable name -> code and code -> name index over {@link Locale#getISOCountries()}.
+ * Keys are matched case-insensitively with the same rules as {@link String#equalsIgnoreCase(String)},
+ * lookups hash and compare the query in place so they do not allocate.
+ */
+final class CountryIndex {
+
+   private static volatile CountryIndex instance;
+
+   private final Table codeByName;
+   private final Table nameByCode;
+
+
+   private CountryIndex(@NonNull String[] codes) {
+      codeByName = new Table(codes.length);
+      nameByCode = new Table(codes.length);
+      for (String code : codes) {
+         String englishName = new Locale("", code).getDisplayCountry(Locale.US);
+         //keep the first match to behave like the old linear scan
+         if (englishName.length() > 0 && codeByName.get(englishName) == null)
+            codeByName.put(englishName, code);
+         nameByCode.put(code, englishName);
+      }
+   }
+
+   /**
+    * Returns the shared index, building it on the calling thread if no one did it before
+    */
+   @NonNull
+   static CountryIndex get() {
+      CountryIndex index = instance;
+      if (index == null) {
+         synchronized (CountryIndex.class) {
+            index = instance;
+            if (index == null)
+               instance = index = new CountryIndex(Locale.getISOCountries());
+         }
+      }
+      return index;
+   }
+
+   /**
+    * Builds the shared index on a background thread, does nothing if it is already built
+    */
+   static void preload() {
+      if (instance != null)
+         return;
+
+      Thread thread = new Thread(CountryIndex::get, "CountryIndex");
+      thread.setPriority(Thread.MIN_PRIORITY);
+      thread.setDaemon(true);
+      thread.start();
+   }
+
+   @Nullable
+   String codeOf(@Nullable String englishName) {
+      return englishName == null ? null : codeByName.get(englishName);
+   }
+
+   @Nullable
+   String englishNameOf(@Nullable String countryCode) {
+      return countryCode == null ? null : nameByCode.get(countryCode);
+   }
+
+
+   /**
+    * Minimal open addressing table with case folded String keys
+    */
+   private static final class Table {
+
+      private final String[] keys;
+      private final String[] values;
+      private final int mask;
+
+      Table(int expectedSize) {
+         int capacity = Integer.highestOneBit(Math.max(expectedSize, 2) * 2 - 1) << 1;
+         keys = new String[capacity];
+         values = new String[capacity];
+         mask = capacity - 1;
+      }
+
+      void put(@NonNull String key, String value) {
+         int i = hash(key) & mask;
+         while (keys[i] != null) {
+            if (keys[i].equalsIgnoreCase(key)) {
+               values[i] = value;
+               return;
+            }
+            i = (i + 1) & mask;
+         }
+         keys[i] = key;
+         values[i] = value;
+      }
+
+      @Nullable
+      String get(@NonNull String key) {
+         int i = hash(key) & mask;
+         String k;
+         while ((k = keys[i]) != null) {
+            if (k.equalsIgnoreCase(key))
+               return values[i];
+            i = (i + 1) & mask;
+         }
+         return null;
+      }
+
+      private static int hash(@NonNull String key) {
+         int h = 0;
+         for (int i = 0; i < key.length(); i++)
+            h = 31 * h + Character.toLowerCase(Character.toUpperCase(key.charAt(i)));
+         return h ^ (h >>> 16);
+      }
+   }
+}
@@ -0,0 +1,410 @@
+package com.dzboot.country_utils;
+
+import androidx.annotation.NonNull;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Search-as-you-type index over ISO codes, english names and localized names of every country.
+ * Terms are case and accent folded and indexed from every word start, so "kingdom" finds United Kingdom.
+ * Short queries are answered by binary search over the sorted terms, longer ones also tolerate typos.
+ * <p>
+ * The index is immutable and can be shared, it is expensive to build so build it off the main thread once.
+ * Each search field then needs its own {@link Searcher}.
+ */
+public final class CountrySearchIndex {
+
+   //exact code matches rank first, then name starts, word starts and finally code prefixes
+   private static final int KIND_CODE = 0;
+   private static final int KIND_NAME = 1;
+   private static final int KIND_WORD = 2;
+   private static final int KIND_CODE_PREFIX = 3;
+   private static final int SCORE_PER_EDIT = 10;
+   //marks a char of the fold table which doesn't fold to a single char
+   private static final char NO_FOLD = '\uffff';
+   private static final char[] FOLD_TABLE = buildFoldTable();
+
+   private final String[] codes;
+   //sorted folded terms, with the country and the kind of each one
+   private final char[][] terms;
+   private final int[] termCountries;
+   private final byte[] termKinds;
+
+
+   private CountrySearchIndex(@NonNull String[] codes, @NonNull List<char[]> terms,
+                              @NonNull List<int[]> info) {
+      this.codes = codes;
+      Integer[] order = new Integer[terms.size()];
+      for (int i = 0; i < order.length; i++)
+         order[i] = i;
+      Arrays.sort(order, (first, second) -> compare(terms.get(first), terms.get(second)));
+
+      this.terms = new char[order.length][];
+      termCountries = new int[order.length];
+      termKinds = new byte[order.length];
+      for (int i = 0; i < order.length; i++) {
+         this.terms[i] = terms.get(order[i]);
+         termCountries[i] = info.get(order[i])[0];
+         termKinds[i] = (byte) info.get(order[i])[1];
+      }
+   }
+
+   /**
+    * Builds an index over the ISO codes, the english names and the names localized in every given locale
+    *
+    * @param locales the locales the user may type in, english is always included
+    * @return the index
+    */
+   @NonNull
+   public static CountrySearchIndex build(@NonNull Locale... locales) {
+      Set<Locale> allLocales = new LinkedHashSet<>();
+      allLocales.add(Locale.US);
+      allLocales.addAll(Arrays.asList(locales));
+
+      List<String> codes = LocalizedCountries.of(Locale.US).getSortedCodes();
+      Map<String, Integer> countries = new HashMap<>();
+      for (int i = 0; i < codes.size(); i++)
+         countries.put(codes.get(i), i);
+
+      List<char[]> terms = new ArrayList<>();
+      List<int[]> info = new ArrayList<>();
+      Set<String> seen = new HashSet<>();
+      for (int country = 0; country < codes.size(); country++) {
+         String code = codes.get(country);
+         addTerm(terms, info, seen, fold(code), 0, country, KIND_CODE);
+         for (Locale locale : allLocales) {
+            String name = LocalizedCountries.of(locale).getName(code);
+            if (name == null)
+               continue;
+
+            String folded = fold(name);
+            for (int start = 0; start < folded.length(); start++) {
+               boolean wordStart = start == 0 || !Character.isLetterOrDigit(folded.charAt(start - 1));
+               if (wordStart && Character.isLetterOrDigit(folded.charAt(start)))
+                  addTerm(terms, info, seen, folded, start, country, start == 0 ? KIND_NAME : KIND_WORD);
+            }
+         }
+      }
+
+      return new CountrySearchIndex(codes.toArray(new String[0]), terms, info);
+   }
+
+   private static void addTerm(List<char[]> terms, List<int[]> info, Set<String> seen,
+                               String folded, int start, int country, int kind) {
+      String term = folded.substring(start);
+      if (seen.add(country + ":" + term)) {
+         terms.add(term.toCharArray());
+         info.add(new int[]{country, kind});
+      }
+   }
+
+   /**
+    * @return a new searcher, searchers keep per-field state and are not thread safe
+    */
+   @NonNull
+   public Searcher newSearcher() {
+      return new Searcher();
+   }
+
+   private static int compare(char[] first, char[] second) {
+      int length = Math.min(first.length, second.length);
+      for (int i = 0; i < length; i++) {
+         if (first[i] != second[i])
+            return first[i] - second[i];
+      }
+      return first.length - second.length;
+   }
+
+   /**
+    * Compares the first length chars of the term with the query, a term shorter than the query sorts first
+    */
+   private static int comparePrefix(char[] term, char[] query, int length) {
+      int common = Math.min(term.length, length);
+      for (int i = 0; i < common; i++) {
+         if (term[i] != query[i])
+            return term[i] - query[i];
+      }
+      return term.length < length ? -1 : 0;
+   }
+
+   /**
+    * Lower case and accent free version of the text, marks are removed after canonical decomposition
+    */
+   @NonNull
+   static String fold(@NonNull String text) {
+      String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+      StringBuilder sb = new StringBuilder(decomposed.length());
+      for (int i = 0; i < decomposed.length(); i++) {
+         char ch = decomposed.charAt(i);
+         if (Character.getType(ch) != Character.NON_SPACING_MARK)
+            sb.append(Character.toLowerCase(ch));
+      }
+      return sb.toString();
+   }
+
+   /**
+    * Folded char of every Latin-1 and Latin Extended char which folds to exactly one char by itself, so most
+    * queries fold without allocating. It is built from {@link #fold(String)} so both always agree, chars folding
+    * to zero or several chars are {@link #NO_FOLD} and make the whole query go through {@link #fold(String)}
+    */
+   @NonNull
+   private static char[] buildFoldTable() {
+      char[] table = new char[0x250];
+      for (char ch = 0; ch < table.length; ch++) {
+         String folded = fold(String.valueOf(ch));
+         table[ch] = folded.length() == 1 ? folded.charAt(0) : NO_FOLD;
+      }
+      return table;
+   }
+
+   private static int maxEdits(int queryLength) {
+      return queryLength < 4 ? 0 : queryLength < 7 ? 1 : 2;
+   }
+
+
+   /**
+    * Runs queries against the index for one search field. Typing more characters narrows the previous
+    * matches instead of searching the whole index again. Apart from the returned list, a search does
+    * not allocate once the internal buffers fit the longest query.
+    */
+   public final class Searcher {
+
+      private char[] query = new char[16];
+      private char[] nextQuery = new char[16];
+      private int queryLength;
+      private int[] row = new int[17];
+      private int[] previousRow = new int[17];
+
+      //matching terms of the last query, as a range of terms when it had no typo tolerance
+      private int[] candidates = new int[terms.length];
+      private int[] nextCandidates = new int[terms.length];
+      private int candidateCount;
+      private int rangeStart;
+      private int rangeEnd;
+      private boolean hasState;
+
+      //best score of each country for the current query, countries listed in matched
+      private final int[] scores = new int[codes.length];
+      private final int[] matched = new int[codes.length];
+      private int matchedCount;
+
+
+      private Searcher() {
+         Arrays.fill(scores, Integer.MAX_VALUE);
+      }
+
+      /**
+       * Finds the countries matching the query, best matches first
+       *
+       * @param text       what the user typed
+       * @param maxResults maximum number of country codes to return
+       * @return the matching country codes
+       */
+      @NonNull
+      public List<String> search(@NonNull CharSequence text, int maxResults) {
+         int previousLength = queryLength;
+         int length = foldQuery(text);
+         boolean narrowing = hasState && previousLength > 0 && length >= previousLength
+                             && maxEdits(length) == maxEdits(previousLength);
+         for (int i = 0; narrowing && i < previousLength; i++)
+            narrowing = nextQuery[i] == query[i];
+
+         char[] swap = query;
+         query = nextQuery;
+         nextQuery = swap;
+         queryLength = length;
+
+         resetScores();
+         if (queryLength == 0) {
+            hasState = false;
+            return new ArrayList<>(0);
+         }
+
+         int edits = maxEdits(queryLength);
+         if (edits == 0)
+            searchRange(narrowing ? rangeStart : 0, narrowing ? rangeEnd : terms.length);
+         else if (narrowing)
+            searchCandidates(edits);
+         else
+            searchAll(edits);
+         hasState = true;
+
+         return collectResults(maxResults);
+      }
+
+      /**
+       * Folds the text into nextQuery like the terms were folded, through the table when every char is in it
+       *
+       * @return the folded length
+       */
+      private int foldQuery(@NonNull CharSequence text) {
+         int length = text.length();
+         ensureCapacity(length);
+         for (int i = 0; i < length; i++) {
+            char ch = text.charAt(i);
+            char folded = ch < FOLD_TABLE.length ? FOLD_TABLE[ch] : NO_FOLD;
+            if (folded == NO_FOLD) {
+               //composed, combining or non Latin chars, decomposition may change the length
+               String slow = fold(text.toString());
+               ensureCapacity(slow.length());
+               slow.getChars(0, slow.length(), nextQuery, 0);
+               return slow.length();
+            }
+            nextQuery[i] = folded;
+         }
+         return length;
+      }
+
+      private void ensureCapacity(int length) {
+         if (length <= query.length)
+            return;
+         query = Arrays.copyOf(query, length * 2);
+         nextQuery = new char[query.length];
+         row = new int[query.length + 1];
+         previousRow = new int[query.length + 1];
+      }
+
+      /**
+       * Forgets the previous query, the next search scans the whole index
+       */
+      public void reset() {
+         hasState = false;
+         queryLength = 0;
+      }
+
+      private void searchRange(int from, int to) {
+         int low = from, high = to;
+         while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparePrefix(terms[mid], query, queryLength) < 0) low = mid + 1;
+            else high = mid;
+         }
+         rangeStart = low;
+
+         high = to;
+         while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparePrefix(terms[mid], query, queryLength) <= 0) low = mid + 1;
+            else high = mid;
+         }
+         rangeEnd = low;
+
+         for (int i = rangeStart; i < rangeEnd; i++)
+            match(i, 0);
+      }
+
+      private void searchAll(int edits) {
+         int count = 0;
+         for (int i = 0; i < terms.length; i++) {
+            int distance = prefixDistance(terms[i], edits);
+            if (distance <= edits) {
+               candidates[count++] = i;
+               match(i, distance);
+            }
+         }
+         candidateCount = count;
+      }
+
+      private void searchCandidates(int edits) {
+         int count = 0;
+         for (int c = 0; c < candidateCount; c++) {
+            int term = candidates[c];
+            int distance = prefixDistance(terms[term], edits);
+            if (distance <= edits) {
+               nextCandidates[count++] = term;
+               match(term, distance);
+            }
+         }
+
+         int[] swap = candidates;
+         candidates = nextCandidates;
+         nextCandidates = swap;
+         candidateCount = count;
+      }
+
+      /**
+       * Edit distance between the query and the closest prefix of the term, stops early once above maxEdits
+       */
+      private int prefixDistance(char[] term, int maxEdits) {
+         int[] previous = previousRow, current = row;
+         for (int j = 0; j <= queryLength; j++)
+            previous[j] = j;
+
+         int best = previous[queryLength];
+         int rows = Math.min(term.length, queryLength + maxEdits);
+         for (int i = 1; i <= rows; i++) {
+            current[0] = i;
+            int rowMin = i;
+            char termChar = term[i - 1];
+            for (int j = 1; j <= queryLength; j++) {
+               int cost = previous[j - 1] + (termChar == query[j - 1] ? 0 : 1);
+               cost = Math.min(cost, Math.min(previous[j], current[j - 1]) + 1);
+               current[j] = cost;
+               if (cost < rowMin)
+                  rowMin = cost;
+            }
+
+            best = Math.min(best, current[queryLength]);
+            if (rowMin > maxEdits)
+               break;
+
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+         }
+         return best;
+      }
+
+      private void match(int term, int distance) {
+         int country = termCountries[term];
+         int kind = termKinds[term];
+         if (kind == KIND_CODE && (distance > 0 || terms[term].length != queryLength))
+            kind = KIND_CODE_PREFIX;
+         int score = distance * SCORE_PER_EDIT + kind;
+         if (scores[country] == Integer.MAX_VALUE)
+            matched[matchedCount++] = country;
+         if (score < scores[country])
+            scores[country] = score;
+      }
+
+      private void resetScores() {
+         for (int i = 0; i < matchedCount; i++)
+            scores[matched[i]] = Integer.MAX_VALUE;
+         matchedCount = 0;
+      }
+
+      @NonNull
+      private List<String> collectResults(int maxResults) {
+         //insertion sort by score then by english name, the list is at most a few hundred countries
+         for (int i = 1; i < matchedCount; i++) {
+            int country = matched[i];
+            int j = i - 1;
+            while (j >= 0 && isBefore(country, matched[j])) {
+               matched[j + 1] = matched[j];
+               j--;
+            }
+            matched[j + 1] = country;
+         }
+
+         int count = Math.min(maxResults, matchedCount);
+         List<String> results = new ArrayList<>(count);
+         for (int i = 0; i < count; i++)
+            results.add(codes[matched[i]]);
+         return results;
+      }
+
+      private boolean isBefore(int country, int other) {
+         return scores[country] < scores[other] || (scores[country] == scores[other] && country < other);
+      }
+   }
+}
@@ -1,10 +1,12 @@
 package com.dzboot.country_utils;
 
 import android.content.Context;
+import android.graphics.drawable.Drawable;
 
 import androidx.annotation.DrawableRes;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
 
 import java.util.Locale;
 
@@ -19,8 +21,21 @@ public class CountryUtils {
     */
    @DrawableRes
    public static int getFlagIconResIdFromCountryCode(@NonNull Context context, String countryCode) {
-      return context.getResources()
-                    .getIdentifier("ic_flag_" + countryCode, "drawable", context.getPackageName());
+      return getFlagIconResIdFromCountryCode(countryCode);
+   }
+
+   /**
+    * Gets the full size flag resource id from the country code
+    * @param countryCode the two letters country code, case insensitive, or a region code like gb_eng
+    * @return the flag resource id, 0 if the flag does not exist
+    */
+   @DrawableRes
+   public static int getFlagIconResIdFromCountryCode(String countryCode) {
+      if (countryCode == null)
+         return 0;
+
+      int index = tableIndex(countryCode);
+      return index >= 0 ? FlagTable.ICONS[index] : FlagTable.iconForRegion(countryCode);
    }
 
    /**
@@ -31,8 +46,55 @@ public class CountryUtils {
     */
    @DrawableRes
    public static int getFlagResIdFromCountryCode(@NonNull Context context, String countryCode) {
-      return context.getResources()
-                    .getIdentifier("flag_" + countryCode, "drawable", context.getPackageName());
+      return getFlagResIdFromCountryCode(countryCode);
+   }
+
+   /**
+    * Gets the small size flag resource id from the country code
+    * @param countryCode the two letters country code, case insensitive, or a region code like gb_eng
+    * @return the flag resource id, 0 if the flag does not exist
+    */
+   @DrawableRes
+   public static int getFlagResIdFromCountryCode(String countryCode) {
+      if (countryCode == null)
+         return 0;
+
+      int index = tableIndex(countryCode);
+      return index >= 0 ? FlagTable.FLAGS[index] : FlagTable.flagForRegion(countryCode);
+   }
+
+   /**
+    * Gets the full size flag as a drawable backed by the shared flag atlas.
+    * Prefer this over the resource ids in lists, every flag is drawn from the same decoded bitmap
+    * @param context non-null context
+    * @param countryCode the two letters country code, case insensitive, or a region code like gb_eng
+    * @return the flag drawable, null if the flag does not exist
+    */
+   @Nullable
+   public static Drawable getFlagIconDrawableFromCountryCode(@NonNull Context context, String countryCode) {
+      Drawable flag = FlagDrawable.create(context, countryCode);
+      if (flag != null)
+         return flag;
+
+      //the atlas could not be decoded, fall back to the flag's own resource
+      int resId = getFlagIconResIdFromCountryCode(countryCode);
+      return resId == 0 ? null : ContextCompat.getDrawable(context, resId);
+   }
+
+   /**
+    * Maps a two letters code to its slot in the 26 * 26 tables indexed by country code
+    * @return the slot, -1 if the code is not made of two ASCII letters
+    */
+   static int tableIndex(@NonNull String countryCode) {
+      if (countryCode.length() != 2)
+         return -1;
+
+      int first = (countryCode.charAt(0) | 0x20) - 'a';
+      int second = (countryCode.charAt(1) | 0x20) - 'a';
+      if (first < 0 || first >= 26 || second < 0 || second >= 26)
+         return -1;
+
+      return first * 26 + second;
    }
 
    /**
@@ -43,12 +105,27 @@ public class CountryUtils {
     */
    @Nullable
    public static String getCountryCodeFromEnglishName(String englishName) {
-      for (String code : Locale.getISOCountries()) {
-         if (new Locale("", code).getDisplayCountry(Locale.US).equalsIgnoreCase(englishName))
-            return code;
-      }
+      return CountryIndex.get().codeOf(englishName);
+   }
 
-      return null;
+   /**
+    * Returns the country's english name from its two letters country code
+    *
+    * @param countryCode the two letters country code, case insensitive
+    * @return the english name or null if the country code does not exist
+    */
+   @Nullable
+   public static String getEnglishNameFromCountryCode(String countryCode) {
+      String englishName = CountryIndex.get().englishNameOf(countryCode);
+      return englishName == null || englishName.isEmpty() ? null : englishName;
+   }
+
+   /**
+    * Builds the country names index on a background thread so the first lookup does not pay for it.
+    * Calling this is optional, lookups build the index themselves when needed
+    */
+   public static void preloadIndex() {
+      CountryIndex.preload();
    }
 
    /**
@@ -71,7 +148,39 @@ public class CountryUtils {
     */
    @Nullable
    public static String getLocalizedNameFromCountryCode(@NonNull String countryCode) {
-      String countryName = new Locale(Locale.getDefault().getLanguage(), countryCode).getDisplayCountry();
+      String countryName = LocalizedCountries.of(Locale.getDefault()).getName(countryCode);
+      if (countryName != null)
+         return countryName;
+
+      //not an ISO country, resolve it the slow way
+      countryName = new Locale(Locale.getDefault().getLanguage(), countryCode).getDisplayCountry();
       return countryName.equals("") ? null : countryName;
    }
+
+   /**
+    * Returns every country localized in the given locale, sorted by name
+    *
+    * @param locale the display locale
+    * @return an immutable snapshot shared by all callers using the same locale
+    */
+   @NonNull
+   public static LocalizedCountries getLocalizedCountries(@NonNull Locale locale) {
+      return LocalizedCountries.of(locale);
+   }
+
+   /**
+    * Builds the localized names of the locale on a background thread
+    *
+    * @param locale the new display locale
+    */
+   public static void preloadLocalizedNames(@NonNull Locale locale) {
+      LocalizedCountries.preload(locale);
+   }
+
+   /**
+    * Drops the localized names of every locale but the current one, call it from onTrimMemory
+    */
+   public static void trimLocalizedNames() {
+      LocalizedCountries.trim();
+   }
 }
@@ -0,0 +1,134 @@
+package com.dzboot.country_utils;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+
+/**
+ * Draws a flag icon from the shared flag atlas generated at build time.
+ * All instances share one decoded bitmap per atlas sheet, so a full country list costs a single decode
+ * and a single texture upload instead of one per flag.
+ */
+public class FlagDrawable extends Drawable {
+
+   private static final Bitmap[] sheets = new Bitmap[FlagAtlasIndex.SHEETS.length];
+
+   private final Bitmap sheet;
+   private final Rect region;
+   private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.DITHER_FLAG);
+
+
+   private FlagDrawable(@NonNull Bitmap sheet, @NonNull Rect region) {
+      this.sheet = sheet;
+      this.region = region;
+   }
+
+   /**
+    * Creates a drawable for the flag icon of the country
+    *
+    * @param context     non-null context
+    * @param countryCode the two letters country code, case insensitive, or a region code like gb_eng
+    * @return the drawable, null if the flag does not exist or its atlas sheet could not be decoded
+    */
+   @Nullable
+   public static FlagDrawable create(@NonNull Context context, String countryCode) {
+      int entry = entryOf(countryCode);
+      if (entry < 0)
+         return null;
+
+      int offset = entry * 5;
+      short[] regions = FlagAtlasIndex.REGIONS;
+      Bitmap sheet = getSheet(context.getResources(), regions[offset]);
+      if (sheet == null)
+         return null;
+
+      int left = regions[offset + 1];
+      int top = regions[offset + 2];
+      Rect region = new Rect(left, top, left + regions[offset + 3], top + regions[offset + 4]);
+      return new FlagDrawable(sheet, region);
+   }
+
+   /**
+    * Drops the shared atlas bitmaps, drawables created before keep theirs until they are collected.
+    * Call it from onTrimMemory when the flags are no longer shown
+    */
+   public static void releaseAtlas() {
+      synchronized (sheets) {
+         for (int i = 0; i < sheets.length; i++)
+            sheets[i] = null;
+      }
+   }
+
+   private static int entryOf(String countryCode) {
+      if (countryCode == null)
+         return -1;
+
+      int index = CountryUtils.tableIndex(countryCode);
+      return index >= 0 ? FlagAtlasIndex.SLOTS[index] - 1 : FlagAtlasIndex.entryForRegion(countryCode);
+   }
+
+   /**
+    * @return the decoded sheet, null if it could not be decoded, for example when out of memory, a later call retries
+    */
+   @Nullable
+   private static Bitmap getSheet(@NonNull Resources resources, int index) {
+      synchronized (sheets) {
+         Bitmap sheet = sheets[index];
+         if (sheet == null) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inScaled = false;
+            sheet = BitmapFactory.decodeResource(resources, FlagAtlasIndex.SHEETS[index], options);
+            sheets[index] = sheet;
+         }
+         return sheet;
+      }
+   }
+
+   @Override
+   public void draw(@NonNull Canvas canvas) {
+      canvas.drawBitmap(sheet, region, getBounds(), paint);
+   }
+
+   @Override
+   public int getIntrinsicWidth() {
+      return region.width();
+   }
+
+   @Override
+   public int getIntrinsicHeight() {
+      return region.height();
+   }
+
+   @Override
+   public void setAlpha(int alpha) {
+      paint.setAlpha(alpha);
+      invalidateSelf();
+   }
+
+   @Override
+   public int getAlpha() {
+      return paint.getAlpha();
+   }
+
+   @Override
+   public void setColorFilter(@Nullable ColorFilter colorFilter) {
+      paint.setColorFilter(colorFilter);
+      invalidateSelf();
+   }
+
+   @Override
+   public int getOpacity() {
+      return PixelFormat.TRANSLUCENT;
+   }
+}
@@ -0,0 +1,215 @@
+package com.dzboot.country_utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+/**
+ * Immutable snapshot of every ISO country name localized in one locale, with its collation keys
+ * and the countries already sorted by name. Snapshots are cached per locale and can be shared freely
+ * between threads, lists returned from them are read only views so handing them out costs nothing.
+ */
+public final class LocalizedCountries {
+
+   private static final Map<Locale, LocalizedCountries> cache = new ConcurrentHashMap<>();
+   private static final ExecutorService builder = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "LocalizedCountries");
+      thread.setPriority(Thread.MIN_PRIORITY);
+      thread.setDaemon(true);
+      return thread;
+   });
+
+   private final Locale locale;
+   //sorted by localized name
+   private final String[] codes;
+   private final String[] names;
+   private final CollationKey[] keys;
+   //position in the sorted arrays + 1 for each two letters code slot, 0 for unknown codes
+   private final short[] ranks = new short[26 * 26];
+   private final List<String> sortedCodes;
+   private final List<String> sortedNames;
+
+
+   private LocalizedCountries(@NonNull Locale locale) {
+      this.locale = locale;
+
+      String[] isoCodes = Locale.getISOCountries();
+      Collator collator = Collator.getInstance(locale);
+      CollationKey[] unsorted = new CollationKey[isoCodes.length];
+      String[] unsortedCodes = new String[isoCodes.length];
+      Integer[] order = new Integer[isoCodes.length];
+      int count = 0;
+      for (String code : isoCodes) {
+         String name = new Locale("", code).getDisplayCountry(locale);
+         if (name.length() > 0 && CountryUtils.tableIndex(code) >= 0) {
+            unsorted[count] = collator.getCollationKey(name);
+            unsortedCodes[count] = code;
+            order[count] = count;
+            count++;
+         }
+      }
+
+      Arrays.sort(order, 0, count, (first, second) -> {
+         int result = unsorted[first].compareTo(unsorted[second]);
+         return result != 0 ? result : unsortedCodes[first].compareTo(unsortedCodes[second]);
+      });
+
+      codes = new String[count];
+      names = new String[count];
+      keys = new CollationKey[count];
+      for (int i = 0; i < count; i++) {
+         keys[i] = unsorted[order[i]];
+         codes[i] = unsortedCodes[order[i]];
+         names[i] = keys[i].getSourceString();
+         ranks[CountryUtils.tableIndex(codes[i])] = (short) (i + 1);
+      }
+
+      sortedCodes = new ArrayView(codes);
+      sortedNames = new ArrayView(names);
+   }
+
+   /**
+    * Returns the snapshot for the locale, building it on the calling thread if it is not cached yet
+    *
+    * @param locale the display locale
+    * @return the cached snapshot
+    */
+   @NonNull
+   public static LocalizedCountries of(@NonNull Locale locale) {
+      LocalizedCountries countries = cache.get(locale);
+      if (countries == null) {
+         countries = new LocalizedCountries(locale);
+         LocalizedCountries previous = cache.putIfAbsent(locale, countries);
+         if (previous != null)
+            countries = previous;
+      }
+      return countries;
+   }
+
+   /**
+    * Builds the snapshot for the locale on a background thread, call it as soon as the app locale changes
+    * so the next screen finds the names ready. The snapshots of the other locales are dropped
+    *
+    * @param locale the new display locale
+    */
+   public static void preload(@NonNull Locale locale) {
+      builder.execute(() -> {
+         of(locale);
+         //the default locale may not be switched yet, keep it until the next trim
+         retain(locale, Locale.getDefault());
+      });
+   }
+
+   /**
+    * Drops every cached snapshot except the one of the current default locale
+    */
+   public static void trim() {
+      Locale current = Locale.getDefault();
+      retain(current, current);
+   }
+
+   private static void retain(@NonNull Locale first, @NonNull Locale second) {
+      for (Locale locale : cache.keySet()) {
+         if (!locale.equals(first) && !locale.equals(second))
+            cache.remove(locale);
+      }
+   }
+
+   @NonNull
+   public Locale getLocale() {
+      return locale;
+   }
+
+   /**
+    * @return the country codes sorted by their localized name, read only
+    */
+   @NonNull
+   public List<String> getSortedCodes() {
+      return sortedCodes;
+   }
+
+   /**
+    * @return the localized country names sorted with the locale's collation rules, read only
+    */
+   @NonNull
+   public List<String> getSortedNames() {
+      return sortedNames;
+   }
+
+   /**
+    * @param countryCode the two letters country code, case insensitive
+    * @return the localized name, null if the country code does not exist
+    */
+   @Nullable
+   public String getName(String countryCode) {
+      int rank = rankOf(countryCode);
+      return rank < 0 ? null : names[rank];
+   }
+
+   /**
+    * @param countryCode the two letters country code, case insensitive
+    * @return the precomputed collation key of the country's localized name, null if the country code does not exist
+    */
+   @Nullable
+   public CollationKey getCollationKey(String countryCode) {
+      int rank = rankOf(countryCode);
+      return rank < 0 ? null : keys[rank];
+   }
+
+   /**
+    * @param countryCode the two letters country code, case insensitive
+    * @return the position of the country in {@link #getSortedCodes()}, -1 if the country code does not exist
+    */
+   public int rankOf(String countryCode) {
+      if (countryCode == null)
+         return -1;
+
+      int index = CountryUtils.tableIndex(countryCode);
+      return index < 0 ? -1 : ranks[index] - 1;
+   }
+
+   /**
+    * Compares country codes by their localized name using the precomputed order, unknown codes go last
+    */
+   @NonNull
+   public Comparator<String> codeComparator() {
+      return (first, second) -> {
+         int firstRank = rankOf(first);
+         int secondRank = rankOf(second);
+         return (firstRank < 0 ? Integer.MAX_VALUE : firstRank) - (secondRank < 0 ? Integer.MAX_VALUE : secondRank);
+      };
+   }
+
+
+   private static final class ArrayView extends AbstractList<String> implements RandomAccess {
+
+      private final String[] items;
+
+      ArrayView(@NonNull String[] items) {
+         this.items = items;
+      }
+
+      @Override
+      public String get(int index) {
+         return items[index];
+      }
+
+      @Override
+      public int size() {
+         return items.length;
+      }
+   }
+}
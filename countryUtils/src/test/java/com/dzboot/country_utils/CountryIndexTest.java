@@ -0,0 +1,71 @@
+package com.dzboot.country_utils;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+public class CountryIndexTest {
+
+   private final CountryIndex index = CountryIndex.get();
+
+
+   @Test
+   public void codeOfIgnoresCase() {
+      assertEquals("FR", index.codeOf("France"));
+      assertEquals("FR", index.codeOf("FRANCE"));
+      assertEquals("FR", index.codeOf("france"));
+   }
+
+   @Test
+   public void codeOfFoldsLikeEqualsIgnoreCase() {
+      //dotted capital I lower cases to i, the hash must agree with equalsIgnoreCase
+      assertEquals("IN", index.codeOf("İNDIA"));
+   }
+
+   @Test
+   public void lookupsDoNotDependOnTheDefaultLocale() {
+      Locale previous = Locale.getDefault();
+      Locale.setDefault(new Locale("tr", "TR"));
+      try {
+         assertEquals("IN", index.codeOf("INDIA"));
+         assertEquals("India", index.englishNameOf("in"));
+      } finally {
+         Locale.setDefault(previous);
+      }
+   }
+
+   @Test
+   public void unknownAndNullKeys() {
+      assertNull(index.codeOf(null));
+      assertNull(index.codeOf(""));
+      assertNull(index.codeOf("Atlantis"));
+      assertNull(index.englishNameOf(null));
+      assertNull(index.englishNameOf("ZZ"));
+   }
+
+   @Test
+   public void everyCodeRoundTrips() {
+      for (String code : Locale.getISOCountries()) {
+         String name = index.englishNameOf(code);
+         assertNotNull(code, name);
+         if (name.isEmpty())
+            continue;
+         //several codes may share a name, the first one wins
+         String found = index.codeOf(name);
+         assertNotNull(name, found);
+         assertTrue(name, name.equalsIgnoreCase(index.englishNameOf(found)));
+      }
+   }
+
+   @Test
+   public void getReturnsTheSharedIndex() {
+      assertSame(CountryIndex.get(), CountryIndex.get());
+   }
+}
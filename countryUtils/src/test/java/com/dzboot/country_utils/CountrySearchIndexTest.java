@@ -0,0 +1,91 @@
+package com.dzboot.country_utils;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class CountrySearchIndexTest {
+
+   //building it is expensive, share it between the tests
+   private static final CountrySearchIndex index = CountrySearchIndex.build(Locale.FRANCE, new Locale("ru"));
+
+
+   private static List<String> search(String query) {
+      return index.newSearcher().search(query, 5);
+   }
+
+   @Test
+   public void exactCodeRanksFirst() {
+      assertEquals("FR", search("fr").get(0));
+      assertEquals("US", search("US").get(0));
+   }
+
+   @Test
+   public void wordStartsMatch() {
+      assertTrue(search("kingdom").contains("GB"));
+   }
+
+   @Test
+   public void composedAndDecomposedAccentsFold() {
+      assertEquals("RE", search("Réunion").get(0));
+      assertEquals("RE", search("RÉUNION").get(0));
+      assertEquals("RE", search("Re\u0301union").get(0));
+      assertEquals("RE", search("reunion").get(0));
+      assertEquals("AX", search("ÅLAND").get(0));
+   }
+
+   @Test
+   public void queriesOutsideTheFoldTableFold() {
+      assertEquals("RU", search("Росс").get(0));
+      assertEquals("RU", search("РОСС").get(0));
+   }
+
+   @Test
+   public void foldMatchesTheTerms() {
+      assertEquals("aland", CountrySearchIndex.fold("ÅLAND"));
+      assertEquals("reunion", CountrySearchIndex.fold("Réunion"));
+      assertEquals("россия", CountrySearchIndex.fold("Россия"));
+   }
+
+   @Test
+   public void longQueriesTolerateTypos() {
+      assertEquals("DE", search("germny").get(0));
+   }
+
+   @Test
+   public void queriesLongerThanTheInitialBuffers() {
+      assertEquals("GS", search("south georgia & south sandwich islands").get(0));
+   }
+
+   @Test
+   public void emptyQueryFindsNothing() {
+      assertTrue(search("").isEmpty());
+   }
+
+   @Test
+   public void maxResultsIsRespected() {
+      assertEquals(2, index.newSearcher().search("a", 2).size());
+   }
+
+   @Test
+   public void typingGivesTheSameResultsAsFreshSearches() {
+      String[] typed = {"g", "ge", "ger", "germ", "germa", "german", "germ", "ge", "",
+                        "r", "ré", "réu", "réun", "RÉUNI", "Росс", "Р"};
+      CountrySearchIndex.Searcher searcher = index.newSearcher();
+      for (String query : typed)
+         assertEquals(query, search(query), searcher.search(query, 5));
+   }
+
+   @Test
+   public void resetForgetsThePreviousQuery() {
+      CountrySearchIndex.Searcher searcher = index.newSearcher();
+      searcher.search("germ", 5);
+      searcher.reset();
+      assertEquals(search("fra"), searcher.search("fra", 5));
+   }
+}